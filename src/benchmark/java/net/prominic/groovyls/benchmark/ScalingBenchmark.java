@@ -0,0 +1,408 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ReferenceParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.TextDocumentPositionParams;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.WorkspaceSymbolParams;
+import org.eclipse.lsp4j.services.LanguageClient;
+
+import com.google.gson.GsonBuilder;
+
+import net.prominic.groovyls.GroovyServices;
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+/**
+ * Runs the startup, keystroke syntax check, keystroke compile, undo,
+ * references, workspace symbol and def chain hover scenarios against generated workspaces
+ * of increasing size, and writes the results to scaling.csv and scaling.json
+ * in the output directory.
+ */
+public class ScalingBenchmark {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String SCENARIO_STARTUP = "startup";
+	private static final String SCENARIO_KEYSTROKE = "keystroke";
+	private static final String SCENARIO_KEYSTROKE_SYNTAX = "keystrokeSyntax";
+	private static final String SCENARIO_UNDO = "undo";
+	private static final String SCENARIO_REFERENCES = "references";
+	private static final String SCENARIO_WORKSPACE_SYMBOL = "workspaceSymbol";
+	private static final String SCENARIO_DEF_CHAIN_FIRST_HOVER = "defChainFirstHover";
+	private static final String SCENARIO_DEF_CHAIN_HOVER = "defChainHover";
+
+	public static void main(String[] args) throws Exception {
+		ScalingBenchmark benchmark = new ScalingBenchmark();
+		WorkspaceGenerator generator = benchmark.getGenerator();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String name = args[i];
+			String value = args[i + 1];
+			switch (name) {
+				case "--sizes":
+					List<Integer> sizes = new ArrayList<>();
+					for (String size : value.split(",")) {
+						sizes.add(Integer.parseInt(size.trim()));
+					}
+					benchmark.setSizes(sizes);
+					break;
+				case "--iterations":
+					benchmark.setIterations(Integer.parseInt(value));
+					break;
+				case "--workspace":
+					benchmark.setWorkspaceRoot(Paths.get(value));
+					break;
+				case "--output":
+					benchmark.setOutputDirectory(Paths.get(value));
+					break;
+				case "--classes-per-file":
+					generator.setClassesPerFile(Integer.parseInt(value));
+					break;
+				case "--inheritance-depth":
+					generator.setInheritanceDepth(Integer.parseInt(value));
+					break;
+				case "--references-per-method":
+					generator.setReferencesPerMethod(Integer.parseInt(value));
+					break;
+				case "--methods-per-class":
+					generator.setMethodsPerClass(Integer.parseInt(value));
+					break;
+				case "--statements-per-method":
+					generator.setStatementsPerMethod(Integer.parseInt(value));
+					break;
+				case "--def-chain-length":
+					benchmark.setDefChainLength(Integer.parseInt(value));
+					break;
+				case "--declarations-only":
+					benchmark.setDeclarationsOnlyForClosedFiles(Boolean.parseBoolean(value));
+					break;
+				case "--workspace-unit":
+					benchmark.setWorkspaceUnitEnabled(Boolean.parseBoolean(value));
+					break;
+				case "--release-parsers":
+					benchmark.setReleaseParsers(Boolean.parseBoolean(value));
+					break;
+				case "--seed":
+					generator.setSeed(Long.parseLong(value));
+					break;
+				default:
+					System.err.println("Unknown argument: " + name);
+					System.exit(1);
+			}
+		}
+		benchmark.run();
+		System.exit(0);
+	}
+
+	private WorkspaceGenerator generator = new WorkspaceGenerator();
+	private List<Integer> sizes = new ArrayList<>();
+	private int iterations = 10;
+	private int defChainLength = 200;
+	private boolean declarationsOnlyForClosedFiles = true;
+	private boolean workspaceUnitEnabled = false;
+	private boolean releaseParsers = true;
+	private Path workspaceRoot = Paths.get("build/benchmark_workspace");
+	private Path outputDirectory = Paths.get("build/benchmark");
+	private List<Map<String, Object>> results = new ArrayList<>();
+	private double retainedKBPer1kLines = 0.0;
+
+	public ScalingBenchmark() {
+		sizes.add(100);
+		sizes.add(1000);
+	}
+
+	public WorkspaceGenerator getGenerator() {
+		return generator;
+	}
+
+	public void setSizes(List<Integer> sizes) {
+		this.sizes = sizes;
+	}
+
+	public void setIterations(int iterations) {
+		this.iterations = Math.max(1, iterations);
+	}
+
+	/**
+	 * The number of variables in the def chain script. If 0, the def chain
+	 * scenarios are skipped.
+	 */
+	public void setDefChainLength(int defChainLength) {
+		this.defChainLength = Math.max(0, defChainLength);
+	}
+
+	/**
+	 * Compare with false to measure the cost of compiling the bodies of
+	 * closed files.
+	 */
+	public void setDeclarationsOnlyForClosedFiles(boolean declarationsOnlyForClosedFiles) {
+		this.declarationsOnlyForClosedFiles = declarationsOnlyForClosedFiles;
+	}
+
+	/**
+	 * Compare with true to measure keystrokes when only the open files are
+	 * compiled against a separate workspace unit.
+	 */
+	public void setWorkspaceUnitEnabled(boolean workspaceUnitEnabled) {
+		this.workspaceUnitEnabled = workspaceUnitEnabled;
+	}
+
+	/**
+	 * Compare with false to measure the heap retained by keeping the parser
+	 * of each source.
+	 */
+	public void setReleaseParsers(boolean releaseParsers) {
+		this.releaseParsers = releaseParsers;
+	}
+
+	public void setWorkspaceRoot(Path workspaceRoot) {
+		this.workspaceRoot = workspaceRoot;
+	}
+
+	public void setOutputDirectory(Path outputDirectory) {
+		this.outputDirectory = outputDirectory;
+	}
+
+	public void run() throws Exception {
+		for (int size : sizes) {
+			runSize(size);
+		}
+		writeResults();
+	}
+
+	private void runSize(int size) throws Exception {
+		generator.setFileCount(size);
+		System.out.println("Generating workspace with " + size + " files...");
+		List<Path> files = generator.generate(workspaceRoot);
+		Path openFile = files.get(0);
+		String uri = openFile.toUri().toString();
+		String originalText = new String(Files.readAllBytes(openFile), StandardCharsets.UTF_8);
+		long lineCount = 0;
+		for (Path file : files) {
+			lineCount += Files.readAllLines(file, StandardCharsets.UTF_8).size();
+		}
+		long heapBeforeStartup = usedHeapAfterGC();
+
+		//startup includes the first compile of the whole workspace
+		long startTime = System.nanoTime();
+		CompilationUnitFactory compilationUnitFactory = new CompilationUnitFactory();
+		compilationUnitFactory.setDeclarationsOnlyForClosedFiles(declarationsOnlyForClosedFiles);
+		compilationUnitFactory.setWorkspaceUnitEnabled(workspaceUnitEnabled);
+		compilationUnitFactory.setReleaseParsers(releaseParsers);
+		GroovyServices services = new GroovyServices(compilationUnitFactory);
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new BenchmarkLanguageClient());
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, originalText)));
+		List<Double> startupTimes = Collections.singletonList(elapsed(startTime));
+		//the memory that the compiled workspace keeps, relative to its size
+		retainedKBPer1kLines = (usedHeapAfterGC() - heapBeforeStartup) / 1024.0 / (lineCount / 1000.0);
+		System.out.println(String.format("%8d files  retained %10.2f KB per 1k lines", size, retainedKBPer1kLines));
+		addResult(size, SCENARIO_STARTUP, startupTimes);
+
+		List<Double> keystrokeSyntaxTimes = new ArrayList<>();
+		List<Double> keystrokeTimes = new ArrayList<>();
+		int version = 1;
+		for (int i = 0; i < iterations; i++) {
+			//a text that hasn't been compiled before, so that every change
+			//needs a compile instead of restoring an earlier version
+			String text = originalText + "\n//keystroke " + i + "\n";
+			startTime = System.nanoTime();
+			changeDocument(services, uri, ++version, text);
+			//the syntax errors are published before didChange returns, and
+			//the compile of the workspace is forced without the usual delay
+			keystrokeSyntaxTimes.add(elapsed(startTime));
+			services.compilePendingChanges();
+			keystrokeTimes.add(elapsed(startTime));
+		}
+		addResult(size, SCENARIO_KEYSTROKE_SYNTAX, keystrokeSyntaxTimes);
+		addResult(size, SCENARIO_KEYSTROKE, keystrokeTimes);
+
+		List<Double> undoTimes = new ArrayList<>();
+		changeDocument(services, uri, ++version, originalText);
+		services.compilePendingChanges();
+		for (int i = 0; i < iterations; i++) {
+			//only the change back to the previous text is measured
+			changeDocument(services, uri, ++version, originalText + "\n//undo " + i + "\n");
+			services.compilePendingChanges();
+			startTime = System.nanoTime();
+			changeDocument(services, uri, ++version, originalText);
+			services.compilePendingChanges();
+			undoTimes.add(elapsed(startTime));
+		}
+		addResult(size, SCENARIO_UNDO, undoTimes);
+
+		int[] methodPosition = generator.getFirstMethodPosition();
+		List<Double> referencesTimes = new ArrayList<>();
+		for (int i = 0; i < iterations; i++) {
+			ReferenceParams referenceParams = new ReferenceParams();
+			referenceParams.setTextDocument(new TextDocumentIdentifier(uri));
+			referenceParams.setPosition(new Position(methodPosition[0], methodPosition[1]));
+			startTime = System.nanoTime();
+			services.references(referenceParams).get();
+			referencesTimes.add(elapsed(startTime));
+		}
+		addResult(size, SCENARIO_REFERENCES, referencesTimes);
+
+		List<Double> symbolTimes = new ArrayList<>();
+		for (int i = 0; i < iterations; i++) {
+			startTime = System.nanoTime();
+			services.symbol(new WorkspaceSymbolParams("Type1")).get();
+			symbolTimes.add(elapsed(startTime));
+		}
+		addResult(size, SCENARIO_WORKSPACE_SYMBOL, symbolTimes);
+
+		if (defChainLength > 0) {
+			//the first hover infers the types of the whole chain, and the
+			//hovers after it may reuse those types until the file changes
+			Path defChainFile = generator.generateDefChainScript(workspaceRoot, defChainLength);
+			String defChainURI = defChainFile.toUri().toString();
+			String defChainText = new String(Files.readAllBytes(defChainFile), StandardCharsets.UTF_8);
+			services.didOpen(new DidOpenTextDocumentParams(
+					new TextDocumentItem(defChainURI, LANGUAGE_GROOVY, 1, defChainText)));
+			TextDocumentPositionParams hoverParams = new TextDocumentPositionParams(
+					new TextDocumentIdentifier(defChainURI), new Position(defChainLength, 1));
+			startTime = System.nanoTime();
+			services.hover(hoverParams).get();
+			addResult(size, SCENARIO_DEF_CHAIN_FIRST_HOVER, Collections.singletonList(elapsed(startTime)));
+			List<Double> hoverTimes = new ArrayList<>();
+			for (int i = 0; i < iterations; i++) {
+				startTime = System.nanoTime();
+				services.hover(hoverParams).get();
+				hoverTimes.add(elapsed(startTime));
+			}
+			addResult(size, SCENARIO_DEF_CHAIN_HOVER, hoverTimes);
+		}
+	}
+
+	private long usedHeapAfterGC() {
+		MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+		//a single collection may not free everything that is unreachable
+		for (int i = 0; i < 3; i++) {
+			memoryBean.gc();
+		}
+		return memoryBean.getHeapMemoryUsage().getUsed();
+	}
+
+	private void changeDocument(GroovyServices services, String uri, int version, String text) {
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(text);
+		services.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, version),
+				Collections.singletonList(changeEvent)));
+	}
+
+	private double elapsed(long startTime) {
+		return (System.nanoTime() - startTime) / 1_000_000.0;
+	}
+
+	private void addResult(int size, String scenario, List<Double> times) {
+		List<Double> sorted = new ArrayList<>(times);
+		Collections.sort(sorted);
+		double total = 0.0;
+		for (double time : sorted) {
+			total += time;
+		}
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("files", size);
+		result.put("scenario", scenario);
+		result.put("iterations", sorted.size());
+		result.put("meanMs", total / sorted.size());
+		result.put("p50Ms", percentile(sorted, 50));
+		result.put("p95Ms", percentile(sorted, 95));
+		result.put("maxMs", sorted.get(sorted.size() - 1));
+		result.put("heapUsedMB", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024));
+		result.put("retainedKBPer1kLines", retainedKBPer1kLines);
+		results.add(result);
+		System.out.println(String.format("%8d files  %-16s mean %10.2f ms  p95 %10.2f ms", size, scenario,
+				result.get("meanMs"), result.get("p95Ms")));
+	}
+
+	private double percentile(List<Double> sortedValues, int percentile) {
+		int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.size());
+		return sortedValues.get(Math.max(rank, 1) - 1);
+	}
+
+	private void writeResults() throws IOException {
+		Files.createDirectories(outputDirectory);
+		try (Writer writer = Files.newBufferedWriter(outputDirectory.resolve("scaling.csv"),
+				StandardCharsets.UTF_8)) {
+			List<String> columns = new ArrayList<>(results.get(0).keySet());
+			writer.write(String.join(",", columns));
+			writer.write("\n");
+			for (Map<String, Object> result : results) {
+				List<String> values = new ArrayList<>();
+				for (String column : columns) {
+					values.add(String.valueOf(result.get(column)));
+				}
+				writer.write(String.join(",", values));
+				writer.write("\n");
+			}
+		}
+		try (Writer writer = Files.newBufferedWriter(outputDirectory.resolve("scaling.json"),
+				StandardCharsets.UTF_8)) {
+			writer.write(new GsonBuilder().setPrettyPrinting().create().toJson(results));
+		}
+		System.out.println("Results written to " + outputDirectory.toAbsolutePath());
+	}
+
+	private static class BenchmarkLanguageClient implements LanguageClient {
+		@Override
+		public void telemetryEvent(Object object) {
+		}
+
+		@Override
+		public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+			return null;
+		}
+
+		@Override
+		public void showMessage(MessageParams messageParams) {
+		}
+
+		@Override
+		public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+		}
+
+		@Override
+		public void logMessage(MessageParams message) {
+		}
+	}
+}
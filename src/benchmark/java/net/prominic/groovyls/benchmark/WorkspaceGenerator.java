@@ -0,0 +1,258 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates a deterministic Groovy workspace of configurable size. The same
+ * options and seed always produce the same files.
+ */
+public class WorkspaceGenerator {
+	public static final String PATH_SRC = "src/main/groovy";
+	public static final String MARKER_FILE = ".groovyls-benchmark-workspace";
+
+	private static final int FILES_PER_PACKAGE = 100;
+
+	private int fileCount = 100;
+	private int classesPerFile = 1;
+	private int inheritanceDepth = 3;
+	private int referencesPerMethod = 2;
+	private int methodsPerClass = 5;
+	private int statementsPerMethod = 10;
+	private long seed = 1L;
+
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	public void setFileCount(int fileCount) {
+		this.fileCount = fileCount;
+	}
+
+	public int getClassesPerFile() {
+		return classesPerFile;
+	}
+
+	public void setClassesPerFile(int classesPerFile) {
+		this.classesPerFile = Math.max(1, classesPerFile);
+	}
+
+	public int getInheritanceDepth() {
+		return inheritanceDepth;
+	}
+
+	/**
+	 * The maximum number of generated superclasses above a generated class.
+	 */
+	public void setInheritanceDepth(int inheritanceDepth) {
+		this.inheritanceDepth = Math.max(0, inheritanceDepth);
+	}
+
+	public int getReferencesPerMethod() {
+		return referencesPerMethod;
+	}
+
+	/**
+	 * The number of references to classes in other files in each method body.
+	 */
+	public void setReferencesPerMethod(int referencesPerMethod) {
+		this.referencesPerMethod = Math.max(0, referencesPerMethod);
+	}
+
+	public int getMethodsPerClass() {
+		return methodsPerClass;
+	}
+
+	public void setMethodsPerClass(int methodsPerClass) {
+		this.methodsPerClass = Math.max(1, methodsPerClass);
+	}
+
+	public int getStatementsPerMethod() {
+		return statementsPerMethod;
+	}
+
+	public void setStatementsPerMethod(int statementsPerMethod) {
+		this.statementsPerMethod = Math.max(0, statementsPerMethod);
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Deletes a workspace that was generated before, and generates a new
+	 * workspace. Returns the paths of the generated files. To avoid deleting
+	 * real data, a directory that isn't empty is only deleted if it contains
+	 * the marker file that this generator creates.
+	 */
+	public List<Path> generate(Path workspaceRoot) throws IOException {
+		if (Files.exists(workspaceRoot)) {
+			boolean isEmpty = false;
+			try (Stream<Path> children = Files.list(workspaceRoot)) {
+				isEmpty = !children.findAny().isPresent();
+			}
+			if (!isEmpty && !Files.exists(workspaceRoot.resolve(MARKER_FILE))) {
+				throw new IOException("Refusing to delete " + workspaceRoot.toAbsolutePath()
+						+ " because it wasn't generated by the benchmark");
+			}
+			try (Stream<Path> paths = Files.walk(workspaceRoot)) {
+				paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(file -> file.delete());
+			}
+		}
+		Files.createDirectories(workspaceRoot);
+		Files.createFile(workspaceRoot.resolve(MARKER_FILE));
+		Path srcRoot = workspaceRoot.resolve(PATH_SRC);
+		Random random = new Random(seed);
+		List<Path> files = new ArrayList<>();
+		for (int i = 0; i < fileCount; i++) {
+			Path packagePath = srcRoot.resolve(getPackageName(i).replace('.', '/'));
+			Files.createDirectories(packagePath);
+			Path filePath = packagePath.resolve(getClassName(i) + ".groovy");
+			try (Writer writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8)) {
+				writer.write(generateFile(i, random));
+			}
+			files.add(filePath);
+		}
+		return files;
+	}
+
+	/**
+	 * Generates a script in the workspace where each dynamically typed
+	 * variable is initialized from the previous one, so inferring the type
+	 * of the last variable requires following the whole chain. The last line
+	 * of the script uses the last variable.
+	 */
+	public Path generateDefChainScript(Path workspaceRoot, int length) throws IOException {
+		Path srcRoot = workspaceRoot.resolve(PATH_SRC);
+		Files.createDirectories(srcRoot);
+		Path filePath = srcRoot.resolve("DefChain.groovy");
+		StringBuilder builder = new StringBuilder();
+		builder.append("def v0 = new StringBuilder()\n");
+		for (int i = 1; i < length; i++) {
+			builder.append("def v").append(i).append(" = v").append(i - 1).append("\n");
+		}
+		builder.append("v").append(length - 1).append(".append(\"end\")\n");
+		try (Writer writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8)) {
+			writer.write(builder.toString());
+		}
+		return filePath;
+	}
+
+	/**
+	 * Returns the zero-based line and column of the name of the first method
+	 * in the primary class of a generated file.
+	 */
+	public int[] getFirstMethodPosition() {
+		// package, blank line, class declaration, field, property, blank line
+		return new int[] { 6, 6 };
+	}
+
+	public String getPackageName(int fileIndex) {
+		return "generated.p" + (fileIndex / FILES_PER_PACKAGE);
+	}
+
+	public String getClassName(int fileIndex) {
+		return "Type" + fileIndex;
+	}
+
+	public String getQualifiedClassName(int fileIndex) {
+		return getPackageName(fileIndex) + "." + getClassName(fileIndex);
+	}
+
+	private String generateFile(int fileIndex, Random random) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("package ");
+		builder.append(getPackageName(fileIndex));
+		builder.append("\n\n");
+		for (int classIndex = 0; classIndex < classesPerFile; classIndex++) {
+			String className = getClassName(fileIndex);
+			if (classIndex > 0) {
+				className += "_" + classIndex;
+			}
+			builder.append("class ");
+			builder.append(className);
+			//chains of subclasses are formed from consecutive files
+			if (classIndex == 0 && fileIndex % (inheritanceDepth + 1) != 0) {
+				builder.append(" extends ");
+				builder.append(getQualifiedClassName(fileIndex - 1));
+			}
+			builder.append(" {\n");
+			builder.append("\tint count").append(classIndex).append("\n");
+			builder.append("\tString name").append(classIndex).append(" = \"").append(className).append("\"\n");
+			builder.append("\n");
+			for (int methodIndex = 0; methodIndex < methodsPerClass; methodIndex++) {
+				generateMethod(builder, fileIndex, classIndex, methodIndex, random);
+			}
+			builder.append("}\n\n");
+		}
+		return builder.toString();
+	}
+
+	private void generateMethod(StringBuilder builder, int fileIndex, int classIndex, int methodIndex,
+			Random random) {
+		builder.append("\tdef method").append(methodIndex).append("(int value, String text) {\n");
+		builder.append("\t\tdef result = value\n");
+		for (int i = 0; i < statementsPerMethod; i++) {
+			switch (random.nextInt(4)) {
+				case 0:
+					builder.append("\t\tresult = result * ").append(i + 2).append(" + value\n");
+					break;
+				case 1:
+					builder.append("\t\tdef local").append(i).append(" = text.toUpperCase() + result\n");
+					break;
+				case 2:
+					builder.append("\t\tif (result > ").append(i * 10).append(") {\n");
+					builder.append("\t\t\tresult -= count").append(classIndex).append("\n");
+					builder.append("\t\t}\n");
+					break;
+				default:
+					builder.append("\t\t[1, 2, 3].each { item -> result += item }\n");
+					break;
+			}
+		}
+		for (int i = 0; i < referencesPerMethod && fileCount > 1; i++) {
+			int otherIndex = random.nextInt(fileCount);
+			if (otherIndex == fileIndex) {
+				otherIndex = (otherIndex + 1) % fileCount;
+			}
+			int otherMethod = random.nextInt(methodsPerClass);
+			builder.append("\t\tdef ref").append(i).append(" = new ").append(getQualifiedClassName(otherIndex))
+					.append("()\n");
+			builder.append("\t\tresult += ref").append(i).append(".method").append(otherMethod)
+					.append("(value, text).hashCode()\n");
+		}
+		builder.append("\t\treturn result\n");
+		builder.append("\t}\n\n");
+	}
+}
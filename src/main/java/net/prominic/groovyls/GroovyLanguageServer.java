@@ -19,13 +19,18 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.lsp4j.CompletionOptions;
+import org.eclipse.lsp4j.ExecuteCommandOptions;
 import org.eclipse.lsp4j.InitializeParams;
 import org.eclipse.lsp4j.InitializeResult;
 import org.eclipse.lsp4j.ServerCapabilities;
@@ -40,14 +45,79 @@ import org.eclipse.lsp4j.services.WorkspaceService;
 
 import net.prominic.groovyls.config.CompilationUnitFactory;
 import net.prominic.groovyls.config.ICompilationUnitFactory;
+import net.prominic.groovyls.trace.TraceRecorder;
 
 public class GroovyLanguageServer implements LanguageServer, LanguageClientAware {
 
+    private static final String ARG_RECORD = "--record";
+    private static final String ARG_TELEMETRY_INTERVAL = "--telemetry-interval";
+    private static final String ARG_COMPILE_DELAY = "--compile-delay";
+    private static final String ARG_BUILD_OUTPUT = "--build-output";
+    private static final String ARG_DETECT_BUILD_OUTPUTS = "--detect-build-outputs";
+    private static final String ARG_WORKSPACE_UNIT = "--workspace-unit";
+    private static final String ARG_MAX_CLOSED_FILES = "--max-closed-files";
+
     public static void main(String[] args) {
-        GroovyLanguageServer server = new GroovyLanguageServer();
-        Launcher<LanguageClient> launcher = Launcher.createLauncher(server, LanguageClient.class, System.in,
+        InputStream in = System.in;
+        long telemetryInterval = 0;
+        long compileDelay = -1;
+        int maxClosedFiles = -1;
+        CompilationUnitFactory compilationUnitFactory = new CompilationUnitFactory();
+        List<Path> buildOutputDirectories = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (ARG_RECORD.equals(args[i]) && i + 1 < args.length) {
+                i++;
+                Path traceFile = Paths.get(args[i]);
+                try {
+                    in = TraceRecorder.record(System.in, traceFile);
+                } catch (IOException e) {
+                    System.err.println("Failed to create trace file: " + traceFile);
+                }
+            } else if (ARG_TELEMETRY_INTERVAL.equals(args[i]) && i + 1 < args.length) {
+                i++;
+                try {
+                    telemetryInterval = Long.parseLong(args[i]);
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid telemetry interval: " + args[i]);
+                }
+            } else if (ARG_COMPILE_DELAY.equals(args[i]) && i + 1 < args.length) {
+                i++;
+                try {
+                    compileDelay = Long.parseLong(args[i]);
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid compile delay: " + args[i]);
+                }
+            } else if (ARG_BUILD_OUTPUT.equals(args[i]) && i + 1 < args.length) {
+                i++;
+                buildOutputDirectories.add(Paths.get(args[i]));
+            } else if (ARG_DETECT_BUILD_OUTPUTS.equals(args[i])) {
+                compilationUnitFactory.setDetectBuildOutputDirectories(true);
+            } else if (ARG_WORKSPACE_UNIT.equals(args[i])) {
+                compilationUnitFactory.setWorkspaceUnitEnabled(true);
+            } else if (ARG_MAX_CLOSED_FILES.equals(args[i]) && i + 1 < args.length) {
+                i++;
+                try {
+                    maxClosedFiles = Integer.parseInt(args[i]);
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid maximum number of closed files: " + args[i]);
+                }
+            }
+        }
+        compilationUnitFactory.setBuildOutputDirectories(buildOutputDirectories);
+        GroovyLanguageServer server = new GroovyLanguageServer(compilationUnitFactory);
+        Launcher<LanguageClient> launcher = Launcher.createLauncher(server, LanguageClient.class, in,
                 System.out);
         server.connect(launcher.getRemoteProxy());
+        if (telemetryInterval > 0) {
+            server.groovyServices.startTelemetry(telemetryInterval);
+        }
+        if (compileDelay >= 0) {
+            server.groovyServices.setCompileDelay(compileDelay);
+        }
+        if (maxClosedFiles >= 0) {
+            server.groovyServices.setResidencyCapacity(maxClosedFiles);
+        }
+        server.groovyServices.startMemoryMonitoring();
         launcher.startListening();
     }
 
@@ -85,6 +155,8 @@ public class GroovyLanguageServer implements LanguageServer, LanguageClientAware
         SignatureHelpOptions signatureHelpOptions = new SignatureHelpOptions();
         signatureHelpOptions.setTriggerCharacters(Arrays.asList("(", ","));
         serverCapabilities.setSignatureHelpProvider(signatureHelpOptions);
+        serverCapabilities.setExecuteCommandProvider(
+                new ExecuteCommandOptions(Arrays.asList(GroovyServices.COMMAND_STATS, GroovyServices.COMMAND_COMPILE_PROFILE)));
 
         InitializeResult initializeResult = new InitializeResult(serverCapabilities);
         return CompletableFuture.completedFuture(initializeResult);
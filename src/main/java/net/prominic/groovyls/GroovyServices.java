@@ -21,25 +21,44 @@ package net.prominic.groovyls;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Modifier;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.codehaus.groovy.GroovyBugError;
 import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.codehaus.groovy.ast.Variable;
+import org.codehaus.groovy.control.CompilationUnit.ProgressCallback;
 import org.codehaus.groovy.control.ErrorCollector;
 import org.codehaus.groovy.control.MultipleCompilationErrorsException;
 import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.ProcessingUnit;
+import org.codehaus.groovy.control.SourceUnit;
 import org.codehaus.groovy.control.messages.Message;
 import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
 import org.codehaus.groovy.syntax.SyntaxException;
@@ -56,9 +75,12 @@ import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.DidSaveTextDocumentParams;
 import org.eclipse.lsp4j.DocumentSymbol;
 import org.eclipse.lsp4j.DocumentSymbolParams;
+import org.eclipse.lsp4j.ExecuteCommandParams;
 import org.eclipse.lsp4j.Hover;
 import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.LocationLink;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.MessageType;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
 import org.eclipse.lsp4j.Range;
@@ -78,36 +100,148 @@ import org.eclipse.lsp4j.services.LanguageClientAware;
 import org.eclipse.lsp4j.services.TextDocumentService;
 import org.eclipse.lsp4j.services.WorkspaceService;
 
+import net.prominic.groovyls.compiler.ast.ASTNodeCache;
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+import net.prominic.groovyls.compiler.ast.DependencyGraph;
 import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.compiler.control.ResidencyGovernor;
+import net.prominic.groovyls.compiler.control.SyntaxChecker;
+import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 import net.prominic.groovyls.config.ICompilationUnitFactory;
+import net.prominic.groovyls.metrics.CompileProfiler;
+import net.prominic.groovyls.metrics.CompileProfiler.FileTiming;
+import net.prominic.groovyls.metrics.MetricsRegistry;
 import net.prominic.groovyls.providers.CompletionProvider;
+import net.prominic.groovyls.providers.CompletionSession;
 import net.prominic.groovyls.providers.DefinitionProvider;
 import net.prominic.groovyls.providers.DocumentSymbolProvider;
 import net.prominic.groovyls.providers.HoverProvider;
+import net.prominic.groovyls.providers.ProviderResultCache;
 import net.prominic.groovyls.providers.ReferenceProvider;
 import net.prominic.groovyls.providers.RenameProvider;
 import net.prominic.groovyls.providers.SignatureHelpProvider;
+import net.prominic.groovyls.providers.SignatureHelpSession;
 import net.prominic.groovyls.providers.TypeDefinitionProvider;
 import net.prominic.groovyls.providers.WorkspaceSymbolProvider;
 import net.prominic.groovyls.util.FileContentsTracker;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+import net.prominic.lsp.utils.Positions;
 
 public class GroovyServices implements TextDocumentService, WorkspaceService, LanguageClientAware {
+	public static final String COMMAND_STATS = "groovy.stats";
+	public static final String COMMAND_COMPILE_PROFILE = "groovy.compileProfile";
+	private static final long SLOW_COMPILE_THRESHOLD_MS = 1000;
+	private static final long DEFAULT_COMPILE_DELAY_MS = 300;
+	private static final Pattern UNRESOLVED_CLASS_PATTERN = Pattern.compile("unable to resolve class ([\\w.$]+)");
+
 	private LanguageClient languageClient;
 
 	private Path workspaceRoot;
 	private ICompilationUnitFactory compilationUnitFactory;
 	private GroovyLSCompilationUnit compilationUnit;
 	private ASTNodeVisitor astVisitor;
+	private DependencyGraph dependencyGraph = new DependencyGraph();
+	private Map<URI, Set<String>> unresolvedClassNamesByURI = new HashMap<>();
 	private Map<URI, List<Diagnostic>> prevDiagnosticsByFile;
+	private Map<URI, List<Diagnostic>> compiledDiagnosticsByURI = new HashMap<>();
+	private Map<URI, List<Diagnostic>> previousCompiledDiagnosticsByURI = new HashMap<>();
 	private FileContentsTracker fileContentsTracker = new FileContentsTracker();
-	private URI previousContext = null;
+	private MetricsRegistry metrics = new MetricsRegistry();
+	private CompileProfiler compileProfiler = new CompileProfiler();
+	private ProviderResultCache resultCache = new ProviderResultCache();
+	private CompletionSession completionSession = null;
+	private long completionSessionHits = 0;
+	private SignatureHelpSession signatureHelpSession = null;
+	private long signatureHelpSessionHits = 0;
+	private ScheduledExecutorService telemetryExecutor;
+	private SyntaxChecker syntaxChecker = new SyntaxChecker();
+	private ResidencyGovernor residencyGovernor = new ResidencyGovernor();
+	private long evictedFileCount = 0;
+	private volatile boolean evictionPending = false;
+	private Set<URI> syntaxDiagnosticsURIs = new HashSet<>();
+	private final Object compileLock = new Object();
+	private final Object diagnosticsLock = new Object();
+	private long compileDelayMs = DEFAULT_COMPILE_DELAY_MS;
+	private ScheduledExecutorService compileExecutor;
+	private ScheduledFuture<?> scheduledCompile;
+	private volatile boolean compilePending = false;
+	private int pendingChangeCount = 0;
 
 	public GroovyServices(ICompilationUnitFactory factory) {
 		compilationUnitFactory = factory;
 	}
 
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Periodically sends a telemetry event to the client with the same
+	 * metrics that are returned by the groovy.stats command.
+	 */
+	public void startTelemetry(long intervalMs) {
+		if (telemetryExecutor != null) {
+			telemetryExecutor.shutdownNow();
+		}
+		telemetryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "groovyls-telemetry");
+			thread.setDaemon(true);
+			return thread;
+		});
+		telemetryExecutor.scheduleAtFixedRate(() -> {
+			LanguageClient client = languageClient;
+			if (client != null) {
+				client.telemetryEvent(metrics.snapshot());
+			}
+		}, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	public long getCompileDelay() {
+		return compileDelayMs;
+	}
+
+	/**
+	 * Sets how long to wait after the last change to a document before the
+	 * whole workspace is compiled. In the meantime, only the changed document
+	 * is parsed to report its syntax errors. If 0, every change is compiled
+	 * immediately.
+	 */
+	public void setCompileDelay(long compileDelayMs) {
+		this.compileDelayMs = compileDelayMs;
+	}
+
+	/**
+	 * Compiles any changes that are waiting for the compile delay to pass,
+	 * or waits for a compile that is already running in the background.
+	 */
+	public void compilePendingChanges() {
+		synchronized (compileLock) {
+			if (compilePending) {
+				compileAndVisitAST();
+			}
+		}
+	}
+
+	/**
+	 * Sets how many closed files keep the bodies of their methods after they
+	 * have been compiled. The others are reduced to their declarations until
+	 * a request needs them again.
+	 */
+	public void setResidencyCapacity(int capacity) {
+		residencyGovernor.setCapacity(capacity);
+	}
+
+	/**
+	 * Keeps fewer closed files with their bodies while the heap is nearly full
+	 * after a garbage collection. The extra files are evicted by the next
+	 * request, because the providers may be reading the AST until then.
+	 */
+	public void startMemoryMonitoring() {
+		residencyGovernor.startMonitoring(() -> {
+			evictionPending = true;
+		});
+	}
+
 	public void setWorkspaceRoot(Path workspaceRoot) {
 		this.workspaceRoot = workspaceRoot;
 		createOrUpdateCompilationUnit();
@@ -122,23 +256,54 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 
 	@Override
 	public void didOpen(DidOpenTextDocumentParams params) {
-		fileContentsTracker.didOpen(params);
-		URI uri = URI.create(params.getTextDocument().getUri());
-		compileAndVisitAST(uri);
+		long startTime = startRequest();
+		try {
+			synchronized (fileContentsTracker) {
+				fileContentsTracker.didOpen(params);
+			}
+			compileAndVisitAST();
+		} finally {
+			metrics.requestCompleted("textDocument/didOpen", startTime);
+		}
 	}
 
 	@Override
 	public void didChange(DidChangeTextDocumentParams params) {
-		fileContentsTracker.didChange(params);
-		URI uri = URI.create(params.getTextDocument().getUri());
-		compileAndVisitAST(uri);
+		long startTime = startRequest();
+		try {
+			if (compileDelayMs <= 0) {
+				changeAndCompile(params);
+				return;
+			}
+			URI uri = URI.create(params.getTextDocument().getUri());
+			String contents = null;
+			synchronized (fileContentsTracker) {
+				fileContentsTracker.didChange(params);
+				contents = fileContentsTracker.getContents(uri);
+				//the changes that are waiting for the next compile
+				pendingChangeCount++;
+				metrics.setGauge("pendingChanges", pendingChangeCount);
+			}
+			//the syntax errors of the changed document are reported right
+			//away, and everything else after the user stops typing
+			publishSyntaxDiagnostics(uri, contents);
+			scheduleCompile();
+		} finally {
+			metrics.requestCompleted("textDocument/didChange", startTime);
+		}
 	}
 
 	@Override
 	public void didClose(DidCloseTextDocumentParams params) {
-		fileContentsTracker.didClose(params);
-		URI uri = URI.create(params.getTextDocument().getUri());
-		compileAndVisitAST(uri);
+		long startTime = startRequest();
+		try {
+			synchronized (fileContentsTracker) {
+				fileContentsTracker.didClose(params);
+			}
+			compileAndVisitAST();
+		} finally {
+			metrics.requestCompleted("textDocument/didClose", startTime);
+		}
 	}
 
 	@Override
@@ -148,14 +313,16 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 
 	@Override
 	public void didChangeWatchedFiles(DidChangeWatchedFilesParams params) {
-		boolean isSameUnit = createOrUpdateCompilationUnit();
-		Set<URI> urisWithChanges = params.getChanges().stream().map(fileEvent -> URI.create(fileEvent.getUri()))
-				.collect(Collectors.toSet());
-		compile();
-		if (isSameUnit) {
-			visitAST(urisWithChanges);
-		} else {
-			visitAST();
+		long startTime = startRequest();
+		try {
+			synchronized (fileContentsTracker) {
+				params.getChanges().forEach(fileEvent -> {
+					fileContentsTracker.forceChanged(URI.create(fileEvent.getUri()));
+				});
+			}
+			compileAndVisitAST();
+		} finally {
+			metrics.requestCompleted("workspace/didChangeWatchedFiles", startTime);
 		}
 	}
 
@@ -167,166 +334,411 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 
 	@Override
 	public CompletableFuture<Hover> hover(TextDocumentPositionParams params) {
-		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		long startTime = startRequest();
+		try {
+			URI uri = URI.create(params.getTextDocument().getUri());
+			prepareDocument(uri);
 
-		HoverProvider provider = new HoverProvider(astVisitor);
-		return provider.provideHover(params.getTextDocument(), params.getPosition());
+			HoverProvider provider = new HoverProvider(astVisitor);
+			return provideWithCache("hover", uri, params.getPosition(),
+					() -> provider.provideHover(params.getTextDocument(), params.getPosition()), null);
+		} finally {
+			metrics.requestCompleted("textDocument/hover", startTime);
+		}
 	}
 
 	@Override
 	public CompletableFuture<Either<List<CompletionItem>, CompletionList>> completion(CompletionParams params) {
-		TextDocumentIdentifier textDocument = params.getTextDocument();
-		Position position = params.getPosition();
-		URI uri = URI.create(textDocument.getUri());
+		long startTime = startRequest();
+		try {
+			TextDocumentIdentifier textDocument = params.getTextDocument();
+			Position position = params.getPosition();
+			URI uri = URI.create(textDocument.getUri());
 
-		recompileIfContextChanged(uri);
+			//the session is checked before compiling, so that typing the
+			//same member name doesn't wait for a compile
+			String text = null;
+			boolean otherFilesChanged = false;
+			synchronized (fileContentsTracker) {
+				text = fileContentsTracker.getContents(uri);
+				otherFilesChanged = hasChangesInOtherFiles(uri);
+			}
+			int cursor = -1;
+			if (text != null) {
+				cursor = Positions.getOffset(text, position);
+			}
+			CompletionSession session = completionSession;
+			if (cursor != -1 && session != null && !otherFilesChanged) {
+				//while the user keeps typing the same member name, the
+				//candidates are the same, so they only need to be filtered
+				//again with the longer prefix
+				int memberStart = session.getMemberStart(uri, text, cursor);
+				if (memberStart != -1) {
+					List<CompletionItem> items = CompletionProvider.filterCandidates(session.getCandidates(),
+							text.substring(memberStart, cursor));
+					completionSessionHits++;
+					metrics.setGauge("completionSessionHits", completionSessionHits);
+					return CompletableFuture.completedFuture(Either.forRight(new CompletionList(false, items)));
+				}
+			}
+			completionSession = null;
+			prepareDocument(uri);
 
-		String originalSource = null;
-		ASTNode offsetNode = astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
-		if (offsetNode == null) {
-			originalSource = fileContentsTracker.getContents(uri);
-			VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-					textDocument.getUri(), 1);
-			TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
-					new Range(position, position), 0, "a");
-			DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-					Collections.singletonList(changeEvent));
-			//if the offset node is null, there is probably a syntax error.
-			//a completion request is usually triggered by the . character, and
-			//if there is no property name after the dot, it will cause a syntax
-			//error.
-			//this hack adds a placeholder property name in the hopes that it
-			//will correctly create a PropertyExpression to use for completion.
-			//we'll restore the original text after we're done handling the
-			//completion request.
-			didChange(didChangeParams);
-		}
-
-		CompletableFuture<Either<List<CompletionItem>, CompletionList>> result = null;
-		try {
-			CompletionProvider provider = new CompletionProvider(astVisitor);
-			result = provider.provideCompletion(params.getTextDocument(), params.getPosition(), params.getContext());
-		} finally {
-			if (originalSource != null) {
+			String originalSource = null;
+			ASTNode offsetNode = astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
+			if (offsetNode == null) {
+				originalSource = fileContentsTracker.getContents(uri);
 				VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-						textDocument.getUri(), 1);
-				TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(null, 0,
-						originalSource);
+						textDocument.getUri(), fileContentsTracker.getVersion(uri));
+				TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
+						new Range(position, position), 0, "a");
 				DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
 						Collections.singletonList(changeEvent));
-				didChange(didChangeParams);
+				//if the offset node is null, there is probably a syntax error.
+				//a completion request is usually triggered by the . character, and
+				//if there is no property name after the dot, it will cause a syntax
+				//error.
+				//this hack adds a placeholder property name in the hopes that it
+				//will correctly create a PropertyExpression to use for completion.
+				//we'll restore the original text after we're done handling the
+				//completion request.
+				changeAndCompile(didChangeParams);
 			}
-		}
 
-		return result;
+			CompletableFuture<Either<List<CompletionItem>, CompletionList>> result = null;
+			try {
+				CompletionProvider provider = new CompletionProvider(astVisitor);
+				result = provider.provideCompletion(params.getTextDocument(), params.getPosition(), params.getContext());
+				List<CompletionItem> candidates = provider.getCandidates();
+				if (candidates != null && cursor != -1) {
+					int memberStart = CompletionSession.findMemberStart(text, cursor);
+					//the session may be used only if the compiler agrees with
+					//where the member name starts
+					if (text.substring(memberStart, cursor).equals(provider.getMemberNamePrefix())) {
+						completionSession = new CompletionSession(uri, text, memberStart, cursor, candidates);
+					}
+				}
+			} finally {
+				if (originalSource != null) {
+					VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
+							textDocument.getUri(), fileContentsTracker.getVersion(uri));
+					TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(null, 0,
+							originalSource);
+					DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
+							Collections.singletonList(changeEvent));
+					changeAndCompile(didChangeParams);
+				}
+			}
+
+			return result;
+		} finally {
+			metrics.requestCompleted("textDocument/completion", startTime);
+		}
 	}
 
 	@Override
 	public CompletableFuture<Either<List<? extends Location>, List<? extends LocationLink>>> definition(TextDocumentPositionParams params) {
-		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		long startTime = startRequest();
+		try {
+			URI uri = URI.create(params.getTextDocument().getUri());
+			prepareDocument(uri);
 
-		DefinitionProvider provider = new DefinitionProvider(astVisitor);
-		return provider.provideDefinition(params.getTextDocument(), params.getPosition());
+			DefinitionProvider provider = new DefinitionProvider(astVisitor);
+			return provideWithCache("definition", uri, params.getPosition(),
+					() -> provider.provideDefinition(params.getTextDocument(), params.getPosition()),
+					this::getLocationURIs);
+		} finally {
+			metrics.requestCompleted("textDocument/definition", startTime);
+		}
 	}
 
 	@Override
 	public CompletableFuture<SignatureHelp> signatureHelp(TextDocumentPositionParams params) {
-		TextDocumentIdentifier textDocument = params.getTextDocument();
-		Position position = params.getPosition();
-		URI uri = URI.create(textDocument.getUri());
-
-		recompileIfContextChanged(uri);
+		long startTime = startRequest();
+		try {
+			TextDocumentIdentifier textDocument = params.getTextDocument();
+			Position position = params.getPosition();
+			URI uri = URI.create(textDocument.getUri());
 
-		String originalSource = null;
-		ASTNode offsetNode = astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
-		if (offsetNode == null) {
-			originalSource = fileContentsTracker.getContents(uri);
-			VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-					textDocument.getUri(), 1);
-			TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
-					new Range(position, position), 0, ")");
-			DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-					Collections.singletonList(changeEvent));
-			//if the offset node is null, there is probably a syntax error.
-			//a signature help request is usually triggered by the ( character,
-			//and if there is no matching ), it will cause a syntax error.
-			//this hack adds a placeholder ) character in the hopes that it
-			//will correctly create a ArgumentListExpression to use for
-			//signature help.
-			//we'll restore the original text after we're done handling the
-			//signature help request.
-			didChange(didChangeParams);
-		}
+			String text = null;
+			boolean otherFilesChanged = false;
+			synchronized (fileContentsTracker) {
+				text = fileContentsTracker.getContents(uri);
+				otherFilesChanged = hasChangesInOtherFiles(uri);
+			}
+			int cursor = -1;
+			if (text != null) {
+				cursor = Positions.getOffset(text, position);
+			}
+			SignatureHelpSession session = signatureHelpSession;
+			if (cursor != -1 && session != null && !otherFilesChanged) {
+				//while the user keeps typing the arguments of the same call,
+				//the overloads are the same, and only the active parameter and
+				//the best overload need to be found again
+				SignatureHelp signatureHelp = session.getSignatureHelp(uri, text, cursor);
+				if (signatureHelp != null) {
+					signatureHelpSessionHits++;
+					metrics.setGauge("signatureHelpSessionHits", signatureHelpSessionHits);
+					return CompletableFuture.completedFuture(signatureHelp);
+				}
+			}
+			signatureHelpSession = null;
+			prepareDocument(uri);
 
-		try {
-			SignatureHelpProvider provider = new SignatureHelpProvider(astVisitor);
-			return provider.provideSignatureHelp(params.getTextDocument(), params.getPosition());
-		} finally {
-			if (originalSource != null) {
+			String originalSource = null;
+			ASTNode offsetNode = astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
+			if (offsetNode == null) {
+				originalSource = fileContentsTracker.getContents(uri);
 				VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-						textDocument.getUri(), 1);
-				TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(null, 0,
-						originalSource);
+						textDocument.getUri(), fileContentsTracker.getVersion(uri));
+				TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
+						new Range(position, position), 0, ")");
 				DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
 						Collections.singletonList(changeEvent));
-				didChange(didChangeParams);
+				//if the offset node is null, there is probably a syntax error.
+				//a signature help request is usually triggered by the ( character,
+				//and if there is no matching ), it will cause a syntax error.
+				//this hack adds a placeholder ) character in the hopes that it
+				//will correctly create a ArgumentListExpression to use for
+				//signature help.
+				//we'll restore the original text after we're done handling the
+				//signature help request.
+				changeAndCompile(didChangeParams);
 			}
+
+			try {
+				SignatureHelpProvider provider = new SignatureHelpProvider(astVisitor);
+				CompletableFuture<SignatureHelp> result = provider.provideSignatureHelp(params.getTextDocument(),
+						params.getPosition());
+				if (cursor != -1) {
+					signatureHelpSession = SignatureHelpSession.create(uri, text, cursor, provider);
+				}
+				return result;
+			} finally {
+				if (originalSource != null) {
+					VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
+							textDocument.getUri(), fileContentsTracker.getVersion(uri));
+					TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(null, 0,
+							originalSource);
+					DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
+							Collections.singletonList(changeEvent));
+					changeAndCompile(didChangeParams);
+				}
+			}
+		} finally {
+			metrics.requestCompleted("textDocument/signatureHelp", startTime);
 		}
 	}
 
 	@Override
 	public CompletableFuture<Either<List<? extends Location>, List<? extends LocationLink>>> typeDefinition(TextDocumentPositionParams params) {
-		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		long startTime = startRequest();
+		try {
+			URI uri = URI.create(params.getTextDocument().getUri());
+			prepareDocument(uri);
 
-		TypeDefinitionProvider provider = new TypeDefinitionProvider(astVisitor);
-		return provider.provideTypeDefinition(params.getTextDocument(), params.getPosition());
+			TypeDefinitionProvider provider = new TypeDefinitionProvider(astVisitor);
+			return provideWithCache("typeDefinition", uri, params.getPosition(),
+					() -> provider.provideTypeDefinition(params.getTextDocument(), params.getPosition()),
+					this::getLocationURIs);
+		} finally {
+			metrics.requestCompleted("textDocument/typeDefinition", startTime);
+		}
 	}
 
 	@Override
 	public CompletableFuture<List<? extends Location>> references(ReferenceParams params) {
-		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
-
-		ReferenceProvider provider = new ReferenceProvider(astVisitor);
-		return provider.provideReferences(params.getTextDocument(), params.getPosition());
+		long startTime = startRequest();
+		try {
+			URI uri = URI.create(params.getTextDocument().getUri());
+			prepareDocument(uri);
+			compileReferencingFilesFully(uri, params.getPosition());
+			ReferenceProvider provider = new ReferenceProvider(astVisitor);
+			return provider.provideReferences(params.getTextDocument(), params.getPosition());
+		} finally {
+			metrics.requestCompleted("textDocument/references", startTime);
+		}
 	}
 
 	@Override
 	public CompletableFuture<List<Either<SymbolInformation, DocumentSymbol>>> documentSymbol(
 			DocumentSymbolParams params) {
-		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		long startTime = startRequest();
+		try {
+			URI uri = URI.create(params.getTextDocument().getUri());
+			prepareDocument(uri);
 
-		DocumentSymbolProvider provider = new DocumentSymbolProvider(astVisitor);
-		return provider.provideDocumentSymbols(params.getTextDocument());
+			DocumentSymbolProvider provider = new DocumentSymbolProvider(astVisitor);
+			return provideWithCache("documentSymbol", uri, null,
+					() -> provider.provideDocumentSymbols(params.getTextDocument()), null);
+		} finally {
+			metrics.requestCompleted("textDocument/documentSymbol", startTime);
+		}
 	}
 
 	@Override
 	public CompletableFuture<List<? extends SymbolInformation>> symbol(WorkspaceSymbolParams params) {
-		WorkspaceSymbolProvider provider = new WorkspaceSymbolProvider(astVisitor);
-		return provider.provideWorkspaceSymbols(params.getQuery());
+		long startTime = startRequest();
+		try {
+			compilePendingChanges();
+			WorkspaceSymbolProvider provider = new WorkspaceSymbolProvider(astVisitor);
+			return provider.provideWorkspaceSymbols(params.getQuery());
+		} finally {
+			metrics.requestCompleted("workspace/symbol", startTime);
+		}
 	}
 
 	@Override
-	public CompletableFuture<WorkspaceEdit> rename(RenameParams params) {
-		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+	public CompletableFuture<Object> executeCommand(ExecuteCommandParams params) {
+		if (COMMAND_STATS.equals(params.getCommand())) {
+			return CompletableFuture.completedFuture(metrics.snapshot());
+		}
+		if (COMMAND_COMPILE_PROFILE.equals(params.getCommand())) {
+			return CompletableFuture.completedFuture(compileProfiler.snapshot());
+		}
+		return CompletableFuture.completedFuture(null);
+	}
 
-		RenameProvider provider = new RenameProvider(astVisitor, fileContentsTracker);
-		return provider.provideRename(params);
+	@Override
+	public CompletableFuture<WorkspaceEdit> rename(RenameParams params) {
+		long startTime = startRequest();
+		try {
+			URI uri = URI.create(params.getTextDocument().getUri());
+			prepareDocument(uri);
+			compileReferencingFilesFully(uri, params.getPosition());
+			RenameProvider provider = new RenameProvider(astVisitor, fileContentsTracker);
+			return provider.provideRename(params);
+		} finally {
+			metrics.requestCompleted("textDocument/rename", startTime);
+		}
 	}
 
 	// --- INTERNAL
 
+	private long startRequest() {
+		metrics.requestStarted();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Returns a cached result for the current version of the document, if
+	 * available. Otherwise, calls the provider and caches its result until
+	 * one of the files that it depends on is compiled again.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> CompletableFuture<T> provideWithCache(String kind, URI uri, Position position,
+			Supplier<CompletableFuture<T>> provider, Function<T, Collection<URI>> resultDependencies) {
+		if (astVisitor == null) {
+			return provider.get();
+		}
+		ProviderResultCache.Key key = new ProviderResultCache.Key(kind, uri, fileContentsTracker.getVersion(uri),
+				position);
+		boolean isCached = resultCache.containsKey(key);
+		metrics.setGauge("providerCacheHits", resultCache.getHits());
+		metrics.setGauge("providerCacheMisses", resultCache.getMisses());
+		if (isCached) {
+			return CompletableFuture.completedFuture((T) resultCache.get(key));
+		}
+		ASTNodeCache<ClassNode> typeCache = astVisitor.getTypeCache();
+		CompletableFuture<T> result = null;
+		//the caches of the AST visitor know which files were used to
+		//infer types and resolve calls while the provider was running
+		typeCache.beginRecording();
+		try {
+			result = provider.get();
+		} finally {
+			Set<URI> dependencies = typeCache.endRecording();
+			if (result != null && result.isDone() && !result.isCompletedExceptionally()) {
+				T value = result.join();
+				dependencies.add(uri);
+				if (value != null && resultDependencies != null) {
+					dependencies.addAll(resultDependencies.apply(value));
+				}
+				resultCache.put(key, value, dependencies);
+			}
+		}
+		return result;
+	}
+
+	private Collection<URI> getLocationURIs(Either<List<? extends Location>, List<? extends LocationLink>> result) {
+		List<URI> uris = new ArrayList<>();
+		if (result.isLeft()) {
+			for (Location location : result.getLeft()) {
+				uris.add(URI.create(location.getUri()));
+			}
+		} else {
+			for (LocationLink link : result.getRight()) {
+				uris.add(URI.create(link.getTargetUri()));
+			}
+		}
+		return uris;
+	}
+
+	private void changeAndCompile(DidChangeTextDocumentParams params) {
+		synchronized (fileContentsTracker) {
+			fileContentsTracker.didChange(params);
+			pendingChangeCount++;
+		}
+		compileAndVisitAST();
+	}
+
+	private void scheduleCompile() {
+		compilePending = true;
+		if (compileExecutor == null) {
+			compileExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "groovyls-compile");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		if (scheduledCompile != null) {
+			scheduledCompile.cancel(false);
+		}
+		scheduledCompile = compileExecutor.schedule(this::compilePendingChanges, compileDelayMs,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Parses a changed document on its own and publishes its syntax errors,
+	 * without waiting for the next compile of the workspace.
+	 */
+	private void publishSyntaxDiagnostics(URI uri, String contents) {
+		if (contents == null) {
+			return;
+		}
+		List<Diagnostic> diagnostics = new ArrayList<>();
+		getDiagnosticsByFile(syntaxChecker.check(uri, contents)).values().forEach(diagnostics::addAll);
+		URI fileURI = Paths.get(uri).toUri();
+		synchronized (diagnosticsLock) {
+			if (prevDiagnosticsByFile == null) {
+				prevDiagnosticsByFile = new HashMap<>();
+			}
+			List<Diagnostic> oldDiagnostics = prevDiagnosticsByFile.get(fileURI);
+			if (diagnostics.isEmpty() && (oldDiagnostics == null || oldDiagnostics.isEmpty())) {
+				return;
+			}
+			if (!diagnostics.isEmpty()) {
+				syntaxDiagnosticsURIs.add(fileURI);
+			} else {
+				syntaxDiagnosticsURIs.remove(fileURI);
+			}
+			//the diagnostics from the last compile may no longer apply to
+			//the changed document, so they're cleared until the next compile
+			prevDiagnosticsByFile.put(fileURI, diagnostics);
+			languageClient.publishDiagnostics(new PublishDiagnosticsParams(fileURI.toString(), diagnostics));
+		}
+	}
+
 	private void visitAST() {
 		if (compilationUnit == null) {
 			return;
 		}
 		astVisitor = new ASTNodeVisitor();
-		astVisitor.visitCompilationUnit(compilationUnit);
+		astVisitor.visitCompilationUnits(getCompilationUnits());
+		resultCache.clear();
+		completionSession = null;
+		signatureHelpSession = null;
+		metrics.setGauge("astNodes", astVisitor.getNodeCount());
 	}
 
 	private void visitAST(Set<URI> uris) {
@@ -337,7 +749,18 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		if (compilationUnit == null) {
 			return;
 		}
-		astVisitor.visitCompilationUnit(compilationUnit, uris);
+		astVisitor.visitCompilationUnits(getCompilationUnits(), uris);
+		resultCache.invalidate(uris);
+		if (completionSession != null
+				&& uris.stream().anyMatch(uri -> !uri.equals(completionSession.getURI()))) {
+			//the members of other files may have changed
+			completionSession = null;
+		}
+		if (signatureHelpSession != null
+				&& uris.stream().anyMatch(uri -> !uri.equals(signatureHelpSession.getURI()))) {
+			signatureHelpSession = null;
+		}
+		metrics.setGauge("astNodes", astVisitor.getNodeCount());
 	}
 
 	private boolean createOrUpdateCompilationUnit() {
@@ -357,6 +780,7 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 
 		GroovyLSCompilationUnit oldCompilationUnit = compilationUnit;
 		compilationUnit = compilationUnitFactory.create(workspaceRoot, fileContentsTracker);
+		metrics.setGauge("changedFiles", fileContentsTracker.getChangedURIs().size());
 		fileContentsTracker.resetChangedFiles();
 
 		if (compilationUnit != null) {
@@ -369,35 +793,433 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		return compilationUnit != null && compilationUnit.equals(oldCompilationUnit);
 	}
 
-	protected void recompileIfContextChanged(URI newContext) {
-		if (previousContext == null || previousContext.equals(newContext)) {
+	/**
+	 * Returns true if files other than the specified document have changes
+	 * that haven't been compiled yet, which may change the members that a
+	 * session has found.
+	 */
+	private boolean hasChangesInOtherFiles(URI uri) {
+		return fileContentsTracker.getChangedURIs().stream().anyMatch(changedURI -> !changedURI.equals(uri));
+	}
+
+	/**
+	 * Compiles any pending changes before a request for a document. If the
+	 * document is closed and it was reduced to its declarations, it is
+	 * compiled fully again.
+	 */
+	private void prepareDocument(URI uri) {
+		compilePendingChanges();
+		residencyGovernor.touch(uri);
+		if (evictionPending) {
+			synchronized (compileLock) {
+				evictClosedFiles(Collections.emptySet());
+			}
+		}
+		if (compilationUnit == null) {
 			return;
 		}
-		fileContentsTracker.forceChanged(newContext);
-		compileAndVisitAST(newContext);
+		synchronized (fileContentsTracker) {
+			if (fileContentsTracker.isOpen(uri)) {
+				return;
+			}
+		}
+		if (getCompilationUnits().stream().anyMatch(unit -> unit.isDeclarationsOnly(uri))) {
+			compileFully(Collections.singleton(uri));
+		}
 	}
 
-	private void compileAndVisitAST(URI contextURI) {
-		Set<URI> uris = Collections.singleton(contextURI);
-		boolean isSameUnit = createOrUpdateCompilationUnit();
-		compile();
-		if (isSameUnit) {
-			visitAST(uris);
+	/**
+	 * References and rename need the bodies of the files that may use the
+	 * definition at a position, so the file of the definition and its
+	 * dependents are promoted and compiled again, if they were compiled with
+	 * their declarations only. Local variables and private members are only
+	 * used in the file where they are declared.
+	 */
+	private void compileReferencingFilesFully(URI uri, Position position) {
+		if (compilationUnit == null || astVisitor == null) {
+			return;
+		}
+		Set<URI> declarationsOnlyURIs = new HashSet<>();
+		getCompilationUnits().forEach(unit -> declarationsOnlyURIs.addAll(unit.getDeclarationsOnlyURIs()));
+		if (declarationsOnlyURIs.isEmpty()) {
+			return;
+		}
+		ASTNode offsetNode = astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
+		if (offsetNode == null) {
+			return;
+		}
+		ASTNode definitionNode = GroovyASTUtils.getDefinition(offsetNode, true, astVisitor);
+		if (definitionNode == null || isLocalVariable(definitionNode)) {
+			return;
+		}
+		URI definitionURI = astVisitor.getURI(definitionNode);
+		Set<URI> uris = new HashSet<>();
+		if (definitionURI == null) {
+			//the definition isn't in the workspace, so any file may use it
+			uris.addAll(declarationsOnlyURIs);
 		} else {
-			visitAST();
+			uris.add(definitionURI);
+			if (!isPrivateMember(definitionNode)) {
+				uris.addAll(dependencyGraph.getDependentsIncludingRemovedBodies(Collections.singleton(definitionURI)));
+			}
+			uris.retainAll(declarationsOnlyURIs);
 		}
-		previousContext = contextURI;
+		if (uris.isEmpty()) {
+			return;
+		}
+		compileFully(uris);
 	}
 
-	private void compile() {
+	private boolean isLocalVariable(ASTNode node) {
+		return node instanceof Variable && !(node instanceof FieldNode) && !(node instanceof PropertyNode);
+	}
+
+	private boolean isPrivateMember(ASTNode node) {
+		int modifiers = 0;
+		if (node instanceof MethodNode) {
+			modifiers = ((MethodNode) node).getModifiers();
+		} else if (node instanceof FieldNode) {
+			modifiers = ((FieldNode) node).getModifiers();
+		} else if (node instanceof PropertyNode) {
+			modifiers = ((PropertyNode) node).getModifiers();
+		} else {
+			return false;
+		}
+		return Modifier.isPrivate(modifiers);
+	}
+
+	private void compileFully(Set<URI> uris) {
+		compilationUnitFactory.promoteToFullCompile(uris);
+		synchronized (fileContentsTracker) {
+			uris.forEach(uri -> fileContentsTracker.forceChanged(uri));
+		}
+		compileAndVisitAST();
+	}
+
+	private void compileAndVisitAST() {
+		synchronized (compileLock) {
+			compilePending = false;
+			//every file that changed since the last compile is visited again,
+			//so that requests for any file may be handled without compiling
+			Set<URI> uris = null;
+			Set<URI> reusedURIs = new HashSet<>();
+			Set<URI> compiledOpenURIs = new HashSet<>();
+			Set<URI> compiledClosedURIs = new HashSet<>();
+			Set<URI> restoredURIs = new HashSet<>();
+			boolean isSameUnit = false;
+			int changeCount = 0;
+			synchronized (fileContentsTracker) {
+				uris = new HashSet<>(fileContentsTracker.getChangedURIs());
+				changeCount = pendingChangeCount;
+				pendingChangeCount = 0;
+				metrics.setGauge("pendingChanges", pendingChangeCount);
+				isSameUnit = createOrUpdateCompilationUnit();
+				if (isSameUnit) {
+					//files with the same contents as the version that was
+					//compiled keep their modules and their nodes
+					Set<URI> unchangedURIs = compilationUnitFactory.getUnchangedURIs();
+					uris.removeAll(unchangedURIs);
+					metrics.setGauge("unchangedFiles", unchangedURIs.size());
+					reusedURIs.addAll(unchangedURIs);
+					for (URI uri : uris) {
+						SourceUnit sourceUnit = compilationUnit.getSourceUnit(uri);
+						if (sourceUnit != null && sourceUnit.getAST() != null) {
+							//an undone change restores the previous version
+							restoredURIs.add(uri);
+							reusedURIs.add(uri);
+						} else if (fileContentsTracker.isOpen(uri)) {
+							compiledOpenURIs.add(uri);
+						} else {
+							compiledClosedURIs.add(uri);
+						}
+					}
+				}
+			}
+			//the first visit includes every file, even if the compilation
+			//unit was created before
+			boolean isFirstVisit = astVisitor == null;
+			Set<URI> compiledURIs = (isSameUnit && !isFirstVisit) ? uris : null;
+			if (isSameUnit && compilationUnit != null && restoredURIs.containsAll(uris)
+					&& compilationUnit.getUncompiledSourceCount() == 0) {
+				//nothing needs to be compiled
+				if (!uris.isEmpty()) {
+					visitAST(uris);
+				}
+			} else {
+				compile(compiledURIs);
+				if (isSameUnit) {
+					visitAST(uris);
+				} else {
+					visitAST();
+				}
+			}
+			updateCompiledDiagnostics(compiledOpenURIs, compiledClosedURIs, restoredURIs, reusedURIs);
+			if (changeCount > 0) {
+				metrics.recordChangesCompiled(changeCount);
+			}
+			//the files that were just compiled are kept until the next
+			//compile, because the request that promoted them may need them
+			evictClosedFiles(uris);
+			recompileDependents(compiledURIs);
+		}
+	}
+
+	/**
+	 * If the declarations in any of the compiled files changed, the files
+	 * that use their classes are compiled again, even though their contents
+	 * didn't change, so that they don't keep classes that no longer exist.
+	 */
+	private void recompileDependents(Set<URI> compiledURIs) {
+		if (compilationUnit == null) {
+			return;
+		}
+		Set<URI> changedURIs = dependencyGraph.update(getCompilationUnits(), compiledURIs, astVisitor);
+		//the diagnostics of the other files were published by earlier
+		//compiles, so the classes that they couldn't resolve are remembered
+		Set<URI> updatedURIs = (compiledURIs != null) ? compiledURIs : dependencyGraph.getURIs();
+		if (compiledURIs == null) {
+			unresolvedClassNamesByURI.clear();
+		}
+		synchronized (diagnosticsLock) {
+			for (URI uri : updatedURIs) {
+				Set<String> unresolvedClassNames = getUnresolvedClassNames(uri);
+				if (!unresolvedClassNames.isEmpty()) {
+					unresolvedClassNamesByURI.put(uri, unresolvedClassNames);
+				} else {
+					unresolvedClassNamesByURI.remove(uri);
+				}
+			}
+		}
+		if (changedURIs.isEmpty()) {
+			return;
+		}
+		Set<URI> dependentURIs = dependencyGraph.getDependents(changedURIs);
+		//a file that couldn't resolve a class may be able to resolve it, if
+		//a class with the same name was added
+		Set<String> changedClassNames = dependencyGraph.getClassNames(changedURIs);
+		unresolvedClassNamesByURI.forEach((uri, unresolvedClassNames) -> {
+			if (unresolvedClassNames.stream().anyMatch(changedClassNames::contains)) {
+				dependentURIs.add(uri);
+			}
+		});
+		dependentURIs.removeAll(compiledURIs);
+		if (dependentURIs.isEmpty()) {
+			return;
+		}
+		compilationUnitFactory.recompile(dependentURIs);
+		synchronized (fileContentsTracker) {
+			dependentURIs.forEach(uri -> fileContentsTracker.forceChanged(uri));
+		}
+		compileAndVisitAST();
+	}
+
+	/**
+	 * Returns the simple names of the classes that a file couldn't resolve
+	 * when it was last compiled.
+	 */
+	private Set<String> getUnresolvedClassNames(URI uri) {
+		Set<String> result = new HashSet<>();
+		if (prevDiagnosticsByFile == null) {
+			return result;
+		}
+		List<Diagnostic> diagnostics = prevDiagnosticsByFile.get(Paths.get(uri).toUri());
+		if (diagnostics == null) {
+			return result;
+		}
+		for (Diagnostic diagnostic : diagnostics) {
+			Matcher matcher = UNRESOLVED_CLASS_PATTERN.matcher(diagnostic.getMessage());
+			if (matcher.find()) {
+				String className = matcher.group(1);
+				result.add(className.substring(Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reduces the closed files that haven't been used recently to their
+	 * declarations, so that the ASTs of their bodies may be collected. They
+	 * are compiled fully again when a request needs them.
+	 */
+	private void evictClosedFiles(Set<URI> compiledURIs) {
+		evictionPending = false;
 		if (compilationUnit == null) {
 			return;
 		}
+		Set<URI> openURIs = null;
+		synchronized (fileContentsTracker) {
+			openURIs = fileContentsTracker.getOpenURIs();
+		}
+		Map<URI, GroovyLSCompilationUnit> unitsByURI = new HashMap<>();
+		Set<URI> keptURIs = new HashSet<>();
+		for (GroovyLSCompilationUnit unit : getCompilationUnits()) {
+			for (URI uri : unit.getFullyCompiledURIs()) {
+				//the versions on disk of open files in the workspace unit are
+				//replaced by the open documents, so they may be evicted too
+				if (unit == compilationUnit && openURIs.contains(uri)) {
+					continue;
+				}
+				if (compiledURIs.contains(uri)) {
+					keptURIs.add(uri);
+					continue;
+				}
+				unitsByURI.putIfAbsent(uri, unit);
+			}
+		}
+		Set<URI> evictedURIs = residencyGovernor.selectForEviction(unitsByURI.keySet());
+		evictedURIs.removeIf(uri -> !unitsByURI.get(uri).demoteToDeclarationsOnly(uri));
+		metrics.setGauge("fullyCompiledClosedFiles", keptURIs.size() + unitsByURI.size() - evictedURIs.size());
+		metrics.setGauge("residencyCapacity", residencyGovernor.getEffectiveCapacity());
+		if (evictedURIs.isEmpty()) {
+			return;
+		}
+		evictedFileCount += evictedURIs.size();
+		metrics.setGauge("evictedFiles", evictedFileCount);
+		compilationUnitFactory.demoteToDeclarationsOnly(evictedURIs);
+		visitAST(evictedURIs);
+	}
+
+	/**
+	 * Remembers the diagnostics of the compiled versions of open documents,
+	 * so that they may be published again when a version is reused without
+	 * compiling, even after the document is closed and opened again.
+	 */
+	private void updateCompiledDiagnostics(Set<URI> compiledOpenURIs, Set<URI> compiledClosedURIs,
+			Set<URI> restoredURIs, Set<URI> reusedURIs) {
+		synchronized (diagnosticsLock) {
+			if (prevDiagnosticsByFile == null) {
+				prevDiagnosticsByFile = new HashMap<>();
+			}
+			for (URI uri : compiledOpenURIs) {
+				List<Diagnostic> diagnostics = prevDiagnosticsByFile.get(Paths.get(uri).toUri());
+				List<Diagnostic> oldDiagnostics = compiledDiagnosticsByURI.put(uri,
+						(diagnostics != null) ? diagnostics : new ArrayList<>());
+				if (oldDiagnostics != null) {
+					previousCompiledDiagnosticsByURI.put(uri, oldDiagnostics);
+				}
+			}
+			for (URI uri : compiledClosedURIs) {
+				compiledDiagnosticsByURI.remove(uri);
+				previousCompiledDiagnosticsByURI.remove(uri);
+			}
+			for (URI uri : restoredURIs) {
+				List<Diagnostic> diagnostics = previousCompiledDiagnosticsByURI.remove(uri);
+				List<Diagnostic> oldDiagnostics = compiledDiagnosticsByURI.remove(uri);
+				if (diagnostics != null) {
+					compiledDiagnosticsByURI.put(uri, diagnostics);
+				}
+				if (oldDiagnostics != null) {
+					previousCompiledDiagnosticsByURI.put(uri, oldDiagnostics);
+				}
+			}
+			for (URI uri : reusedURIs) {
+				List<Diagnostic> diagnostics = compiledDiagnosticsByURI.get(uri);
+				if (diagnostics == null) {
+					continue;
+				}
+				URI fileURI = Paths.get(uri).toUri();
+				syntaxDiagnosticsURIs.remove(fileURI);
+				prevDiagnosticsByFile.put(fileURI, diagnostics);
+				languageClient.publishDiagnostics(new PublishDiagnosticsParams(fileURI.toString(), diagnostics));
+			}
+		}
+	}
+
+	/**
+	 * Returns the compilation unit, followed by the workspace unit that it
+	 * resolves classes from, if there is one.
+	 */
+	private List<GroovyLSCompilationUnit> getCompilationUnits() {
+		List<GroovyLSCompilationUnit> units = new ArrayList<>();
+		if (compilationUnit != null) {
+			units.add(compilationUnit);
+		}
+		GroovyLSCompilationUnit workspaceUnit = compilationUnitFactory.getWorkspaceCompilationUnit();
+		if (workspaceUnit != null && workspaceUnit != compilationUnit) {
+			units.add(workspaceUnit);
+		}
+		return units;
+	}
+
+	/**
+	 * Compiles the sources that were added to the compilation units, and
+	 * publishes their diagnostics. If the compiled files are null, every
+	 * file was compiled. Otherwise, the other files keep their diagnostics
+	 * from earlier compiles.
+	 */
+	private void compile(Set<URI> compiledURIs) {
+		if (compilationUnit == null) {
+			return;
+		}
+		GroovyLSCompilationUnit workspaceUnit = compilationUnitFactory.getWorkspaceCompilationUnit();
+		int sourcesToCompile = compilationUnit.getUncompiledSourceCount();
+		long compileStartTime = System.nanoTime();
+		long[] phaseStartTime = { compileStartTime };
+		ProgressCallback progressCallback = new ProgressCallback() {
+			@Override
+			public void call(ProcessingUnit context, int phase) {
+				//called when each phase is complete
+				long now = System.nanoTime();
+				metrics.recordCompilePhase(phase, now - phaseStartTime[0]);
+				phaseStartTime[0] = now;
+			}
+		};
+		if (workspaceUnit != null && workspaceUnit.getUncompiledSourceCount() > 0) {
+			//the open files resolve classes from the workspace unit, so it
+			//is compiled first. it only has sources to compile after files
+			//change on disk, but then the request that triggered the compile
+			//waits for it too
+			sourcesToCompile += workspaceUnit.getUncompiledSourceCount();
+			compileUnit(workspaceUnit, progressCallback);
+		}
+		compileUnit(compilationUnit, progressCallback);
+		long compileDuration = System.nanoTime() - compileStartTime;
+		metrics.recordCompile(compileDuration, sourcesToCompile);
+		compileProfiler.compileCompleted();
+		if (compileDuration / 1_000_000 >= SLOW_COMPILE_THRESHOLD_MS) {
+			logSlowCompile(compileDuration);
+		}
+		int moduleCount = compilationUnit.getAST().getModules().size();
+		if (workspaceUnit != null) {
+			moduleCount += workspaceUnit.getAST().getModules().size();
+		}
+		metrics.setGauge("modules", moduleCount);
+		metrics.setGauge("openFiles", fileContentsTracker.getOpenURIs().size());
+		Map<URI, List<Diagnostic>> diagnosticsByFile = getDiagnosticsByFile(compilationUnit.getErrorCollector());
+		if (workspaceUnit != null) {
+			//the errors in the versions on disk of open files are replaced by
+			//the errors in the open documents
+			getDiagnosticsByFile(workspaceUnit.getErrorCollector()).forEach((uri, diagnostics) -> {
+				if (compilationUnit.getSourceUnit(uri) == null) {
+					diagnosticsByFile.putIfAbsent(uri, diagnostics);
+				}
+			});
+		}
+		synchronized (diagnosticsLock) {
+			if (compiledURIs != null && prevDiagnosticsByFile != null) {
+				//the errors of a file are collected only when it's compiled
+				Set<URI> compiledFileURIs = compiledURIs.stream().map(uri -> Paths.get(uri).toUri())
+						.collect(Collectors.toSet());
+				prevDiagnosticsByFile.forEach((uri, diagnostics) -> {
+					if (!compiledFileURIs.contains(uri)) {
+						diagnosticsByFile.putIfAbsent(uri, diagnostics);
+					}
+				});
+			}
+			syntaxDiagnosticsURIs.clear();
+			Set<PublishDiagnosticsParams> diagnostics = handleDiagnostics(diagnosticsByFile);
+			diagnostics.stream().forEach(languageClient::publishDiagnostics);
+		}
+	}
+
+	private void compileUnit(GroovyLSCompilationUnit unit, ProgressCallback progressCallback) {
+		unit.setProgressCallback(progressCallback);
+		unit.setCompileProfiler(compileProfiler);
 		try {
 			//AST is completely built after the canonicalization phase
 			//for code intelligence, we shouldn't need to go further
 			//http://groovy-lang.org/metaprogramming.html#_compilation_phases_guide
-			compilationUnit.compile(Phases.CANONICALIZATION);
+			unit.compile(Phases.CANONICALIZATION);
 		} catch (MultipleCompilationErrorsException e) {
 			// ignore
 		} catch (GroovyBugError e) {
@@ -407,11 +1229,49 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 			System.err.println("Unexpected exception in language server when compiling Groovy.");
 			e.printStackTrace(System.err);
 		}
-		Set<PublishDiagnosticsParams> diagnostics = handleErrorCollector(compilationUnit.getErrorCollector());
-		diagnostics.stream().forEach(languageClient::publishDiagnostics);
 	}
 
-	private Set<PublishDiagnosticsParams> handleErrorCollector(ErrorCollector collector) {
+	private void logSlowCompile(long compileDuration) {
+		if (languageClient == null) {
+			return;
+		}
+		StringBuilder builder = new StringBuilder();
+		builder.append("Slow compile: ");
+		builder.append(compileDuration / 1_000_000);
+		builder.append("ms");
+		for (FileTiming timing : compileProfiler.getSlowestInLastCompile()) {
+			builder.append("\n  ");
+			builder.append(Phases.getDescription(timing.getPhase()));
+			builder.append(": ");
+			builder.append(timing.getSourceName());
+			builder.append(" (wall ");
+			builder.append(timing.getWallNanos() / 1_000_000);
+			builder.append("ms, cpu ");
+			builder.append(timing.getCpuNanos() / 1_000_000);
+			builder.append("ms)");
+		}
+		languageClient.logMessage(new MessageParams(MessageType.Log, builder.toString()));
+	}
+
+	private Set<PublishDiagnosticsParams> handleDiagnostics(Map<URI, List<Diagnostic>> diagnosticsByFile) {
+		Set<PublishDiagnosticsParams> result = diagnosticsByFile.entrySet().stream()
+				.map(entry -> new PublishDiagnosticsParams(entry.getKey().toString(), entry.getValue()))
+				.collect(Collectors.toSet());
+
+		if (prevDiagnosticsByFile != null) {
+			for (URI key : prevDiagnosticsByFile.keySet()) {
+				if (!diagnosticsByFile.containsKey(key)) {
+					// send an empty list of diagnostics for files that had
+					// diagnostics previously or they won't be cleared
+					result.add(new PublishDiagnosticsParams(key.toString(), new ArrayList<>()));
+				}
+			}
+		}
+		prevDiagnosticsByFile = diagnosticsByFile;
+		return result;
+	}
+
+	private Map<URI, List<Diagnostic>> getDiagnosticsByFile(ErrorCollector collector) {
 		Map<URI, List<Diagnostic>> diagnosticsByFile = new HashMap<>();
 
 		@SuppressWarnings("unchecked")
@@ -430,21 +1290,6 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 						diagnosticsByFile.computeIfAbsent(uri, (key) -> new ArrayList<>()).add(diagnostic);
 					});
 		}
-
-		Set<PublishDiagnosticsParams> result = diagnosticsByFile.entrySet().stream()
-				.map(entry -> new PublishDiagnosticsParams(entry.getKey().toString(), entry.getValue()))
-				.collect(Collectors.toSet());
-
-		if (prevDiagnosticsByFile != null) {
-			for (URI key : prevDiagnosticsByFile.keySet()) {
-				if (!diagnosticsByFile.containsKey(key)) {
-					// send an empty list of diagnostics for files that had
-					// diagnostics previously or they won't be cleared
-					result.add(new PublishDiagnosticsParams(key.toString(), new ArrayList<>()));
-				}
-			}
-		}
-		prevDiagnosticsByFile = diagnosticsByFile;
-		return result;
+		return diagnosticsByFile;
 	}
 }
\ No newline at end of file
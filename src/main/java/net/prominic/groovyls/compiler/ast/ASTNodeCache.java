@@ -0,0 +1,202 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.groovy.ast.ASTNode;
+
+/**
+ * Caches a value computed for an AST node, keyed by the node's identity.
+ * Each value records the URIs of the files that it was computed from, and it
+ * is dropped when any of those files are recompiled. Values that were not
+ * able to record any files are dropped whenever anything is recompiled,
+ * unless they were stored as permanent.
+ * 
+ * Values may be computed recursively. While a value is being computed, the
+ * files recorded by any nested values are added to it too, and a node that
+ * is already being computed is reported as a cycle.
+ */
+public class ASTNodeCache<V> {
+	private static class Entry<V> {
+		public V value;
+		public Set<URI> dependencies;
+		public boolean permanent;
+	}
+
+	private Map<ASTNode, Entry<V>> entries = new IdentityHashMap<>();
+	private Set<ASTNode> computing = Collections.newSetFromMap(new IdentityHashMap<>());
+	private Deque<Set<URI>> dependencyStack;
+
+	public ASTNodeCache() {
+		dependencyStack = new ArrayDeque<>();
+	}
+
+	/**
+	 * Creates a cache that shares its record of dependencies with another
+	 * cache. When a value from either cache is used while computing a value
+	 * for the other, its dependencies are added to both.
+	 */
+	public ASTNodeCache(ASTNodeCache<?> other) {
+		dependencyStack = other.dependencyStack;
+	}
+
+	public boolean containsKey(ASTNode node) {
+		return entries.containsKey(node);
+	}
+
+	/**
+	 * Returns the cached value of the node, or null. The value's dependencies
+	 * are added to the value that is currently being computed, if any.
+	 */
+	public V get(ASTNode node) {
+		Entry<V> entry = entries.get(node);
+		if (entry == null) {
+			return null;
+		}
+		Set<URI> current = dependencyStack.peek();
+		if (current != null) {
+			current.addAll(entry.dependencies);
+		}
+		return entry.value;
+	}
+
+	/**
+	 * Stores a value that depends on the specified files.
+	 */
+	public void put(ASTNode node, V value, Set<URI> dependencies) {
+		Entry<V> entry = new Entry<>();
+		entry.value = value;
+		entry.dependencies = dependencies;
+		entries.put(node, entry);
+	}
+
+	/**
+	 * Stores a value that does not depend on any file in the workspace, such
+	 * as one computed from precompiled classes. It is kept until clear() is
+	 * called.
+	 */
+	public void putPermanent(ASTNode node, V value) {
+		Entry<V> entry = new Entry<>();
+		entry.value = value;
+		entry.dependencies = Collections.emptySet();
+		entry.permanent = true;
+		entries.put(node, entry);
+	}
+
+	/**
+	 * Starts computing a value for the node. Returns false if the node's value
+	 * is already being computed, which means that there is a cycle.
+	 */
+	public boolean beginCompute(ASTNode node) {
+		if (!computing.add(node)) {
+			return false;
+		}
+		dependencyStack.push(new HashSet<>());
+		return true;
+	}
+
+	/**
+	 * Starts recording the files that are used by any cached values, for a
+	 * result that is stored somewhere else.
+	 */
+	public void beginRecording() {
+		dependencyStack.push(new HashSet<>());
+	}
+
+	/**
+	 * Stops recording that was started by beginRecording(), and returns the
+	 * files that were used.
+	 */
+	public Set<URI> endRecording() {
+		Set<URI> dependencies = dependencyStack.pop();
+		Set<URI> parent = dependencyStack.peek();
+		if (parent != null) {
+			parent.addAll(dependencies);
+		}
+		return dependencies;
+	}
+
+	/**
+	 * Records that the value currently being computed depends on a file.
+	 */
+	public void addDependency(URI uri) {
+		Set<URI> current = dependencyStack.peek();
+		if (current != null && uri != null) {
+			current.add(uri);
+		}
+	}
+
+	/**
+	 * Finishes computing the value for a node that was passed to
+	 * beginCompute(), and stores it in the cache.
+	 */
+	public void endCompute(ASTNode node, V value) {
+		computing.remove(node);
+		Set<URI> dependencies = dependencyStack.pop();
+		put(node, value, dependencies);
+		Set<URI> parent = dependencyStack.peek();
+		if (parent != null) {
+			parent.addAll(dependencies);
+		}
+	}
+
+	/**
+	 * Stops computing the value for a node that was passed to beginCompute()
+	 * without storing anything, such as when an exception is thrown.
+	 */
+	public void cancelCompute(ASTNode node) {
+		computing.remove(node);
+		dependencyStack.pop();
+	}
+
+	/**
+	 * Drops any values that depend on the specified files.
+	 */
+	public void invalidate(Collection<URI> uris) {
+		Iterator<Entry<V>> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry<V> entry = iterator.next();
+			if (entry.permanent) {
+				continue;
+			}
+			if (entry.dependencies.isEmpty() || !Collections.disjoint(entry.dependencies, uris)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+}
@@ -96,6 +96,9 @@ import org.codehaus.groovy.control.SourceUnit;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 
+import net.prominic.groovyls.compiler.util.CallSiteResolution;
+import net.prominic.groovyls.compiler.util.DeclarationNameFinder;
+import net.prominic.groovyls.compiler.util.MemberTable;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 import net.prominic.lsp.utils.Positions;
 import net.prominic.lsp.utils.Ranges;
@@ -104,6 +107,10 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	private class ASTNodeLookupData {
 		public ASTNode parent;
 		public URI uri;
+		public ClassNode enclosingClass;
+		public MethodNode enclosingMethod;
+		public Range nameRange;
+		public boolean isNameRangeFound;
 	}
 
 	private SourceUnit sourceUnit;
@@ -114,10 +121,13 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	}
 
 	private Stack<ASTNode> stack = new Stack<>();
-	private Set<ASTNode> allNodes = new HashSet<>();
+	private Stack<ASTNodeLookupData> dataStack = new Stack<>();
 	private Map<URI, List<ASTNode>> nodesByURI = new HashMap<>();
-	private Set<ClassNode> classNodes = new HashSet<>();
+	private Map<String, ClassNode> classNodesByName = new HashMap<>();
 	private Map<ASTNode, ASTNodeLookupData> lookup = new HashMap<>();
+	private ASTNodeCache<ClassNode> typeCache = new ASTNodeCache<>();
+	private ASTNodeCache<MemberTable> memberTableCache = new ASTNodeCache<>(typeCache);
+	private ASTNodeCache<CallSiteResolution> callSiteCache = new ASTNodeCache<>(typeCache);
 
 	private void pushASTNode(ASTNode node) {
 		boolean isSynthetic = false;
@@ -125,35 +135,69 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 			AnnotatedNode annotatedNode = (AnnotatedNode) node;
 			isSynthetic = annotatedNode.isSynthetic();
 		}
+
+		//synthetic nodes aren't added to the lookup, but they still need
+		//data so that their children know what encloses them
+		URI uri = sourceUnit.getSource().getURI();
+		ASTNodeLookupData data = new ASTNodeLookupData();
+		data.uri = uri;
+		if (stack.size() > 0) {
+			data.parent = stack.lastElement();
+			ASTNodeLookupData parentData = dataStack.lastElement();
+			data.enclosingClass = parentData.enclosingClass;
+			data.enclosingMethod = parentData.enclosingMethod;
+		}
+		if (node instanceof ClassNode) {
+			data.enclosingClass = (ClassNode) node;
+			data.enclosingMethod = null;
+		} else if (node instanceof MethodNode) {
+			data.enclosingMethod = (MethodNode) node;
+		}
+
 		if (!isSynthetic) {
-			URI uri = sourceUnit.getSource().getURI();
 			if (!nodesByURI.containsKey(uri)) {
 				nodesByURI.put(uri, new ArrayList<>());
 			}
 			List<ASTNode> nodes = nodesByURI.get(uri);
 			nodes.add(node);
-
-			ASTNodeLookupData data = new ASTNodeLookupData();
-			data.uri = uri;
-			if (stack.size() > 0) {
-				data.parent = stack.lastElement();
-			}
 			lookup.put(node, data);
 		}
 
 		stack.add(node);
+		dataStack.add(data);
 	}
 
 	private void popASTNode() {
 		stack.pop();
+		dataStack.pop();
 	}
 
 	public List<ClassNode> getClassNodes() {
-		return new ArrayList<>(classNodes);
+		return new ArrayList<>(classNodesByName.values());
+	}
+
+	/**
+	 * Returns the class from source code with the specified fully-qualified
+	 * name, or null.
+	 */
+	public ClassNode getClassNodeByName(String name) {
+		return classNodesByName.get(name);
 	}
 
 	public List<ASTNode> getNodes() {
-		return new ArrayList<>(allNodes);
+		List<ASTNode> result = new ArrayList<>();
+		for (List<ASTNode> nodes : nodesByURI.values()) {
+			result.addAll(nodes);
+		}
+		return result;
+	}
+
+	public int getNodeCount() {
+		int count = 0;
+		for (List<ASTNode> nodes : nodesByURI.values()) {
+			count += nodes.size();
+		}
+		return count;
 	}
 
 	public List<ASTNode> getNodes(URI uri) {
@@ -230,6 +274,30 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		return data.parent;
 	}
 
+	/**
+	 * Returns the innermost class that contains the node, or the node itself
+	 * if it is a class.
+	 */
+	public ClassNode getEnclosingClass(ASTNode node) {
+		ASTNodeLookupData data = lookup.get(node);
+		if (data == null) {
+			return null;
+		}
+		return data.enclosingClass;
+	}
+
+	/**
+	 * Returns the innermost method or constructor that contains the node, or
+	 * the node itself if it is a method.
+	 */
+	public MethodNode getEnclosingMethod(ASTNode node) {
+		ASTNodeLookupData data = lookup.get(node);
+		if (data == null) {
+			return null;
+		}
+		return data.enclosingMethod;
+	}
+
 	public boolean contains(ASTNode ancestor, ASTNode descendant) {
 		ASTNode current = getParent(descendant);
 		while (current != null) {
@@ -241,6 +309,47 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		return false;
 	}
 
+	/**
+	 * Types that have been inferred for nodes, which are kept until the files
+	 * that they were inferred from are visited again.
+	 */
+	public ASTNodeCache<ClassNode> getTypeCache() {
+		return typeCache;
+	}
+
+	/**
+	 * Member tables of classes, which are kept until the files that declare
+	 * the class or its superclasses and interfaces are visited again.
+	 */
+	public ASTNodeCache<MemberTable> getMemberTableCache() {
+		return memberTableCache;
+	}
+
+	/**
+	 * Overloads and best matches of method and constructor calls, which are
+	 * kept until the files that they were resolved from are visited again.
+	 */
+	public ASTNodeCache<CallSiteResolution> getCallSiteCache() {
+		return callSiteCache;
+	}
+
+	/**
+	 * Returns the range of the name of a class, method, property or field
+	 * declaration. The name is found by the finder the first time, and the
+	 * range is kept until the node's file is visited again.
+	 */
+	public Range getNameRange(ASTNode node, DeclarationNameFinder finder) {
+		ASTNodeLookupData data = lookup.get(node);
+		if (data == null) {
+			return finder.findNameRange(node);
+		}
+		if (!data.isNameRangeFound) {
+			data.nameRange = finder.findNameRange(node);
+			data.isNameRangeFound = true;
+		}
+		return data.nameRange;
+	}
+
 	public URI getURI(ASTNode node) {
 		ASTNodeLookupData data = lookup.get(node);
 		if (data == null) {
@@ -250,16 +359,35 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	}
 
 	public void visitCompilationUnit(CompilationUnit unit) {
+		visitCompilationUnits(Collections.singletonList(unit));
+	}
+
+	/**
+	 * Visits several compilation units. If more than one unit contains a
+	 * source for the same URI, only the first one is visited.
+	 */
+	public void visitCompilationUnits(List<? extends CompilationUnit> units) {
 		nodesByURI.clear();
-		allNodes.clear();
-		classNodes.clear();
+		classNodesByName.clear();
 		lookup.clear();
-		unit.iterator().forEachRemaining(sourceUnit -> {
-			visitSourceUnit(sourceUnit);
-		});
+		typeCache.clear();
+		memberTableCache.clear();
+		callSiteCache.clear();
+		Set<URI> visitedURIs = new HashSet<>();
+		for (CompilationUnit unit : units) {
+			unit.iterator().forEachRemaining(sourceUnit -> {
+				if (visitedURIs.add(sourceUnit.getSource().getURI())) {
+					visitSourceUnit(sourceUnit);
+				}
+			});
+		}
 	}
 
 	public void visitCompilationUnit(CompilationUnit unit, Collection<URI> uris) {
+		visitCompilationUnits(Collections.singletonList(unit), uris);
+	}
+
+	public void visitCompilationUnits(List<? extends CompilationUnit> units, Collection<URI> uris) {
 		uris.forEach(uri -> {
 			//clear all old nodes so that they may be replaced
 			List<ASTNode> nodes = nodesByURI.remove(uri);
@@ -267,17 +395,29 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 				nodes.forEach(node -> {
 					lookup.remove(node);
 				});
-				allNodes.removeAll(nodes);
-				classNodes.removeAll(nodes);
-			}
-		});
-		unit.iterator().forEachRemaining(sourceUnit -> {
-			URI uri = sourceUnit.getSource().getURI();
-			if (!uris.contains(uri)) {
-				return;
+				nodes.forEach(node -> {
+					if (node instanceof ClassNode) {
+						ClassNode classNode = (ClassNode) node;
+						if (classNodesByName.get(classNode.getName()) == classNode) {
+							classNodesByName.remove(classNode.getName());
+						}
+					}
+				});
 			}
-			visitSourceUnit(sourceUnit);
 		});
+		typeCache.invalidate(uris);
+		memberTableCache.invalidate(uris);
+		callSiteCache.invalidate(uris);
+		Set<URI> visitedURIs = new HashSet<>();
+		for (CompilationUnit unit : units) {
+			unit.iterator().forEachRemaining(sourceUnit -> {
+				URI uri = sourceUnit.getSource().getURI();
+				if (!uris.contains(uri) || !visitedURIs.add(uri)) {
+					return;
+				}
+				visitSourceUnit(sourceUnit);
+			});
+		}
 	}
 
 	public void visitSourceUnit(SourceUnit unit) {
@@ -291,7 +431,7 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	// GroovyClassVisitor
 
 	public void visitClass(ClassNode node) {
-		classNodes.add(node);
+		classNodesByName.putIfAbsent(node.getName(), node);
 		pushASTNode(node);
 		try {
 			super.visitClass(node);
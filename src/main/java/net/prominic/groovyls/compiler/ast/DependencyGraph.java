@@ -0,0 +1,294 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.GenericsType;
+import org.codehaus.groovy.ast.ImportNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.codehaus.groovy.ast.Variable;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.SourceUnit;
+
+import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.compiler.util.GroovyASTUtils;
+
+/**
+ * Records which files use the classes declared in each file, and a signature
+ * of the declarations in each file. When the signature of a file changes, the
+ * files that use its classes need to be compiled again, even if their own
+ * contents didn't change.
+ */
+public class DependencyGraph {
+	private Map<URI, Set<URI>> dependenciesByURI = new HashMap<>();
+	private Map<URI, String> signaturesByURI = new HashMap<>();
+	private Map<URI, Set<String>> classNamesByURI = new HashMap<>();
+	private Map<URI, Set<String>> removedBodyNamesByURI = new HashMap<>();
+
+	/**
+	 * Records the dependencies and signatures of the specified files, which
+	 * must have been visited already. If the files are null, every file in
+	 * the compilation units is recorded, and the previous records are
+	 * cleared. Returns the files whose signatures changed, including files
+	 * that were removed.
+	 */
+	public Set<URI> update(List<? extends CompilationUnit> units, Collection<URI> uris, ASTNodeVisitor astVisitor) {
+		Set<URI> changedURIs = new HashSet<>();
+		if (uris == null) {
+			dependenciesByURI.clear();
+			signaturesByURI.clear();
+			classNamesByURI.clear();
+			removedBodyNamesByURI.clear();
+		}
+		Set<URI> visitedURIs = new HashSet<>();
+		for (CompilationUnit unit : units) {
+			unit.iterator().forEachRemaining(sourceUnit -> {
+				URI uri = sourceUnit.getSource().getURI();
+				if ((uris != null && !uris.contains(uri)) || !visitedURIs.add(uri)) {
+					return;
+				}
+				dependenciesByURI.put(uri, getDependencies(uri, astVisitor));
+				classNamesByURI.put(uri, getClassNames(sourceUnit));
+				Set<String> removedBodyNames = GroovyLSCompilationUnit.getRemovedBodyNames(sourceUnit.getAST());
+				if (removedBodyNames != null) {
+					removedBodyNamesByURI.put(uri, removedBodyNames);
+				} else {
+					removedBodyNamesByURI.remove(uri);
+				}
+				String signature = getSignature(sourceUnit);
+				String oldSignature = signaturesByURI.put(uri, signature);
+				if (uris != null && !signature.equals(oldSignature)) {
+					changedURIs.add(uri);
+				}
+			});
+		}
+		if (uris != null) {
+			for (URI uri : uris) {
+				if (visitedURIs.contains(uri)) {
+					continue;
+				}
+				//the file was removed
+				dependenciesByURI.remove(uri);
+				classNamesByURI.remove(uri);
+				removedBodyNamesByURI.remove(uri);
+				if (signaturesByURI.remove(uri) != null) {
+					changedURIs.add(uri);
+				}
+			}
+		}
+		return changedURIs;
+	}
+
+	/**
+	 * Returns the files that use classes declared in any of the specified
+	 * files, not including the specified files.
+	 */
+	public Set<URI> getDependents(Collection<URI> uris) {
+		Set<URI> result = new HashSet<>();
+		dependenciesByURI.forEach((uri, dependencies) -> {
+			if (uris.contains(uri)) {
+				return;
+			}
+			if (dependencies.stream().anyMatch(uris::contains)) {
+				result.add(uri);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the files that use classes declared in any of the specified
+	 * files, like getDependents(), and also the files compiled with their
+	 * declarations only whose removed bodies used the names of those classes.
+	 */
+	public Set<URI> getDependentsIncludingRemovedBodies(Collection<URI> uris) {
+		Set<URI> result = getDependents(uris);
+		Set<String> classNames = getClassNames(uris);
+		removedBodyNamesByURI.forEach((uri, removedBodyNames) -> {
+			if (uris.contains(uri)) {
+				return;
+			}
+			if (removedBodyNames.stream().anyMatch(classNames::contains)) {
+				result.add(uri);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the simple names of the classes declared in the specified
+	 * files, including inner classes.
+	 */
+	public Set<String> getClassNames(Collection<URI> uris) {
+		Set<String> result = new HashSet<>();
+		for (URI uri : uris) {
+			result.addAll(classNamesByURI.getOrDefault(uri, Collections.emptySet()));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns every file that has been recorded.
+	 */
+	public Set<URI> getURIs() {
+		return new HashSet<>(signaturesByURI.keySet());
+	}
+
+	private Set<URI> getDependencies(URI uri, ASTNodeVisitor astVisitor) {
+		Set<ClassNode> types = new HashSet<>();
+		for (ASTNode node : astVisitor.getNodes(uri)) {
+			if (node instanceof ClassNode) {
+				ClassNode classNode = (ClassNode) node;
+				addType(classNode.getUnresolvedSuperClass(), types);
+				for (ClassNode interfaceNode : classNode.getInterfaces()) {
+					addType(interfaceNode, types);
+				}
+			} else if (node instanceof MethodNode) {
+				MethodNode methodNode = (MethodNode) node;
+				addType(methodNode.getReturnType(), types);
+				for (Parameter parameter : methodNode.getParameters()) {
+					addType(parameter.getType(), types);
+				}
+			} else if (node instanceof FieldNode) {
+				addType(((FieldNode) node).getType(), types);
+			} else if (node instanceof PropertyNode) {
+				addType(((PropertyNode) node).getType(), types);
+			} else if (node instanceof ImportNode) {
+				addType(((ImportNode) node).getType(), types);
+			} else if (node instanceof Expression) {
+				addType(((Expression) node).getType(), types);
+			}
+			if (node instanceof Variable) {
+				addType(((Variable) node).getOriginType(), types);
+			}
+		}
+		Set<URI> dependencies = new HashSet<>();
+		for (ClassNode type : types) {
+			URI dependency = GroovyASTUtils.getSourceURI(type);
+			if (dependency != null && !dependency.equals(uri)) {
+				dependencies.add(dependency);
+			}
+		}
+		return dependencies;
+	}
+
+	private void addType(ClassNode type, Set<ClassNode> types) {
+		if (type == null) {
+			return;
+		}
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (!types.add(type.redirect())) {
+			return;
+		}
+		if (type.getGenericsTypes() != null) {
+			for (GenericsType genericsType : type.getGenericsTypes()) {
+				addType(genericsType.getType(), types);
+			}
+		}
+	}
+
+	private Set<String> getClassNames(SourceUnit sourceUnit) {
+		Set<String> classNames = new HashSet<>();
+		ModuleNode module = sourceUnit.getAST();
+		if (module == null) {
+			return classNames;
+		}
+		for (ClassNode classNode : module.getClasses()) {
+			//inner classes may be used by their own names
+			String name = classNode.getNameWithoutPackage();
+			classNames.add(name.substring(name.lastIndexOf('$') + 1));
+		}
+		return classNames;
+	}
+
+	private String getSignature(SourceUnit sourceUnit) {
+		ModuleNode module = sourceUnit.getAST();
+		if (module == null) {
+			return "";
+		}
+		StringBuilder builder = new StringBuilder();
+		for (ClassNode classNode : module.getClasses()) {
+			builder.append(classNode.getModifiers());
+			builder.append(' ');
+			builder.append(classNode.toString(false));
+			builder.append(" extends ");
+			builder.append(classNode.getUnresolvedSuperClass().toString(false));
+			for (ClassNode interfaceNode : classNode.getInterfaces()) {
+				builder.append(", ");
+				builder.append(interfaceNode.toString(false));
+			}
+			builder.append('\n');
+			for (FieldNode field : classNode.getFields()) {
+				builder.append(field.getModifiers());
+				builder.append(' ');
+				builder.append(field.getType().toString(false));
+				builder.append(' ');
+				builder.append(field.getName());
+				builder.append('\n');
+			}
+			for (PropertyNode property : classNode.getProperties()) {
+				builder.append(property.getModifiers());
+				builder.append(' ');
+				builder.append(property.getType().toString(false));
+				builder.append(' ');
+				builder.append(property.getName());
+				builder.append('\n');
+			}
+			for (MethodNode method : classNode.getDeclaredConstructors()) {
+				appendMethodSignature(method, builder);
+			}
+			for (MethodNode method : classNode.getMethods()) {
+				appendMethodSignature(method, builder);
+			}
+		}
+		return builder.toString();
+	}
+
+	private void appendMethodSignature(MethodNode method, StringBuilder builder) {
+		builder.append(method.getModifiers());
+		builder.append(' ');
+		builder.append(method.getReturnType().toString(false));
+		builder.append(' ');
+		builder.append(method.getName());
+		builder.append('(');
+		for (Parameter parameter : method.getParameters()) {
+			builder.append(parameter.getType().toString(false));
+			builder.append(',');
+		}
+		builder.append(")\n");
+	}
+}
@@ -19,49 +19,336 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.compiler.control;
 
+import java.net.URI;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import org.codehaus.groovy.ast.CompileUnit;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.CodeVisitorSupport;
+import org.codehaus.groovy.ast.ConstructorNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.expr.CastExpression;
+import org.codehaus.groovy.ast.expr.ClassExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.PropertyExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.CatchStatement;
+import org.codehaus.groovy.ast.stmt.ForStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
 import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+
+import net.prominic.groovyls.compiler.control.io.CharSequenceReaderSource;
+import net.prominic.groovyls.compiler.control.io.HashedReaderSource;
+import net.prominic.groovyls.metrics.CompileProfiler;
 
 public class GroovyLSCompilationUnit extends CompilationUnit {
+	private static final String REMOVED_BODY_NAMES = "removedBodyNames";
+
+	private int uncompiledSourceCount = 0;
+	private CompileProfiler compileProfiler;
+	private Map<URI, SourceUnit> sourcesByURI = new HashMap<>();
+	private Set<URI> declarationsOnlyURIs = new HashSet<>();
+	private Map<URI, SourceUnit> previousSourcesByURI = new HashMap<>();
+
 	public GroovyLSCompilationUnit(CompilerConfiguration config) {
-		super(config);
-		this.errorCollector = new LanguageServerErrorCollector(config);
+		this(config, true);
+	}
+
+	/**
+	 * If releaseParsers is true, the parser of each source is released after
+	 * it's converted to an AST. The configuration is copied first, so the
+	 * caller's configuration isn't modified.
+	 */
+	public GroovyLSCompilationUnit(CompilerConfiguration config, boolean releaseParsers) {
+		super(releaseParsers ? createReleasingConfiguration(config) : config);
+		this.errorCollector = new LanguageServerErrorCollector(getConfiguration());
+		this.ast = new GroovyLSCompileUnit(this.classLoader, getConfiguration());
+		addPhaseOperation(new SourceUnitOperation() {
+			@Override
+			public void call(SourceUnit source) throws CompilationFailedException {
+				URI uri = source.getSource().getURI();
+				if (source.getAST() != null && declarationsOnlyURIs.contains(uri)) {
+					removeBodies(source.getAST());
+				}
+			}
+		}, Phases.CONVERSION);
+	}
+
+	private static CompilerConfiguration createReleasingConfiguration(CompilerConfiguration config) {
+		CompilerConfiguration result = new CompilerConfiguration(config);
+		//the copy doesn't include the customizers
+		result.addCompilationCustomizers(config.getCompilationCustomizers().toArray(new CompilationCustomizer[0]));
+		//the parser isn't needed after a source is converted to an AST
+		result.setPluginFactory(new ReleasingParserPluginFactory(config.getPluginFactory()));
+		return result;
 	}
 
 	public void setErrorCollector(LanguageServerErrorCollector errorCollector) {
 		this.errorCollector = errorCollector;
 	}
 
+	@Override
+	public SourceUnit addSource(SourceUnit source) {
+		uncompiledSourceCount++;
+		SourceUnit result = super.addSource(source);
+		URI uri = result.getSource().getURI();
+		if (uri != null) {
+			sourcesByURI.put(uri, result);
+			declarationsOnlyURIs.remove(uri);
+			if (!(result.getSource() instanceof CharSequenceReaderSource)) {
+				previousSourcesByURI.remove(uri);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a source that is compiled with its declarations only. The bodies
+	 * of its methods, constructors, initializers and closures are removed
+	 * after it is parsed, so only the types in its declarations are
+	 * resolved.
+	 */
+	public SourceUnit addDeclarationsOnlySource(SourceUnit source) {
+		SourceUnit result = addSource(source);
+		URI uri = result.getSource().getURI();
+		if (uri != null) {
+			declarationsOnlyURIs.add(uri);
+		}
+		return result;
+	}
+
+	public boolean isDeclarationsOnly(URI uri) {
+		return declarationsOnlyURIs.contains(uri);
+	}
+
+	/**
+	 * Returns the URIs of the sources that are compiled with their
+	 * declarations only.
+	 */
+	public Set<URI> getDeclarationsOnlyURIs() {
+		return new HashSet<>(declarationsOnlyURIs);
+	}
+
+	/**
+	 * Returns the URIs of the sources that have been compiled with their
+	 * method bodies.
+	 */
+	public Set<URI> getFullyCompiledURIs() {
+		return sourcesByURI.entrySet().stream()
+				.filter(entry -> entry.getValue().getAST() != null && !declarationsOnlyURIs.contains(entry.getKey()))
+				.map(entry -> entry.getKey()).collect(Collectors.toSet());
+	}
+
+	/**
+	 * Removes the bodies from a source that has already been compiled, so
+	 * that only its declarations are kept in memory. The types that were
+	 * resolved in its declarations are kept, so it doesn't need to be
+	 * compiled again.
+	 */
+	public boolean demoteToDeclarationsOnly(URI uri) {
+		SourceUnit sourceUnit = sourcesByURI.get(uri);
+		if (sourceUnit == null || sourceUnit.getAST() == null || declarationsOnlyURIs.contains(uri)) {
+			return false;
+		}
+		removeBodies(sourceUnit.getAST());
+		declarationsOnlyURIs.add(uri);
+		previousSourcesByURI.remove(uri);
+		return true;
+	}
+
+	/**
+	 * Returns the source unit that was added for a URI, or null.
+	 */
+	public SourceUnit getSourceUnit(URI uri) {
+		return sourcesByURI.get(uri);
+	}
+
+	/**
+	 * Returns the hash of the contents that were parsed for a URI, or null if
+	 * the source hasn't been parsed.
+	 */
+	public byte[] getContentHash(URI uri) {
+		return getContentHash(sourcesByURI.get(uri));
+	}
+
+	/**
+	 * Returns the hash of the contents of the version of an open document
+	 * that was compiled before the current one, or null.
+	 */
+	public byte[] getPreviousContentHash(URI uri) {
+		return getContentHash(previousSourcesByURI.get(uri));
+	}
+
+	/**
+	 * Replaces the current source for a URI with the version of the open
+	 * document that was compiled before it, along with its module, so that
+	 * undoing a change doesn't require compiling again. The current source
+	 * becomes the previous version.
+	 */
+	public boolean restorePreviousSource(URI uri) {
+		SourceUnit previous = previousSourcesByURI.remove(uri);
+		if (previous == null) {
+			return false;
+		}
+		SourceUnit current = sourcesByURI.get(uri);
+		if (current != null) {
+			removeSource(current);
+		}
+		sources.put(previous.getName(), previous);
+		names.add(previous.getName());
+		sourcesByURI.put(uri, previous);
+		ast.addModule(previous.getAST());
+		return true;
+	}
+
+	/**
+	 * Forgets the previous version of a document, so that it can't be
+	 * restored.
+	 */
+	public void clearPreviousSource(URI uri) {
+		previousSourcesByURI.remove(uri);
+	}
+
+	/**
+	 * The number of source units that have been added since the last call to
+	 * compile().
+	 */
+	public int getUncompiledSourceCount() {
+		return uncompiledSourceCount;
+	}
+
+	@Override
+	public void compile(int throughPhase) throws CompilationFailedException {
+		uncompiledSourceCount = 0;
+		try {
+			super.compile(throughPhase);
+		} finally {
+			compact();
+		}
+	}
+
+	/**
+	 * Releases what the compiler needed to build the ASTs but the providers
+	 * don't use. The parser of each source, with its syntax tree and its copy
+	 * of the text, is released as soon as the AST is built. Sources of open
+	 * documents that have been parsed don't need their text anymore, so the
+	 * old versions of the documents may be collected.
+	 */
+	private void compact() {
+		iterator().forEachRemaining(sourceUnit -> {
+			if (sourceUnit.getAST() != null && sourceUnit.getSource() instanceof CharSequenceReaderSource) {
+				((CharSequenceReaderSource) sourceUnit.getSource()).release();
+			}
+		});
+	}
+
+	/**
+	 * If set, the time spent on each source unit in each phase is recorded.
+	 */
+	public void setCompileProfiler(CompileProfiler compileProfiler) {
+		this.compileProfiler = compileProfiler;
+	}
+
+	@Override
+	public void applyToSourceUnits(SourceUnitOperation body) throws CompilationFailedException {
+		if (compileProfiler == null) {
+			super.applyToSourceUnits(body);
+			return;
+		}
+		CompileProfiler profiler = compileProfiler;
+		int phase = getPhase();
+		super.applyToSourceUnits(new SourceUnitOperation() {
+			@Override
+			public void call(SourceUnit source) throws CompilationFailedException {
+				long wallStart = System.nanoTime();
+				long cpuStart = profiler.currentThreadCpuTime();
+				try {
+					body.call(source);
+				} finally {
+					profiler.record(phase, source.getName(), System.nanoTime() - wallStart,
+							profiler.currentThreadCpuTime() - cpuStart);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void applyToPrimaryClassNodes(PrimaryClassNodeOperation body) throws CompilationFailedException {
+		if (compileProfiler == null) {
+			super.applyToPrimaryClassNodes(body);
+			return;
+		}
+		CompileProfiler profiler = compileProfiler;
+		int phase = getPhase();
+		super.applyToPrimaryClassNodes(new PrimaryClassNodeOperation() {
+			@Override
+			public void call(SourceUnit source, GeneratorContext context, ClassNode classNode)
+					throws CompilationFailedException {
+				long wallStart = System.nanoTime();
+				long cpuStart = profiler.currentThreadCpuTime();
+				try {
+					body.call(source, context, classNode);
+				} finally {
+					profiler.record(phase, source.getName(), System.nanoTime() - wallStart,
+							profiler.currentThreadCpuTime() - cpuStart);
+				}
+			}
+
+			@Override
+			public boolean needSortedInput() {
+				return body.needSortedInput();
+			}
+		});
+	}
+
 	public void removeSources(Collection<SourceUnit> sourceUnitsToRemove) {
+		GroovyLSCompileUnit compileUnit = (GroovyLSCompileUnit) ast;
 		for (SourceUnit sourceUnit : sourceUnitsToRemove) {
 			if (sourceUnit.getAST() != null) {
-				List<String> sourceUnitClassNames = sourceUnit.getAST().getClasses().stream()
-						.map(classNode -> classNode.getName()).collect(Collectors.toList());
-				generatedClasses.removeIf(groovyClass -> sourceUnitClassNames.contains(groovyClass.getName()));
+				Set<String> sourceUnitClassNames = sourceUnit.getAST().getClasses().stream()
+						.map(classNode -> classNode.getName()).collect(Collectors.toSet());
+				if (!generatedClasses.isEmpty()) {
+					generatedClasses.removeIf(groovyClass -> sourceUnitClassNames.contains(groovyClass.getName()));
+				}
 				for (String className : sourceUnitClassNames) {
 					summariesByPublicClassName.remove(className);
 					classSourcesByPublicClassName.remove(className);
 				}
+				//keep existing modules from other source units
+				compileUnit.removeModule(sourceUnit.getAST());
 			}
 
 			summariesBySourceName.remove(sourceUnit.getName());
 			sources.remove(sourceUnit.getName());
 			names.remove(sourceUnit.getName());
-		}
-		//keep existing modules from other source units
-		List<ModuleNode> modules = ast.getModules();
-		ast = new CompileUnit(this.classLoader, null, this.configuration);
-		for (ModuleNode module : modules) {
-			if (!sourceUnitsToRemove.contains(module.getContext())) {
-				ast.addModule(module);
+			URI uri = sourceUnit.getSource().getURI();
+			if (uri != null && sourcesByURI.get(uri) == sourceUnit) {
+				sourcesByURI.remove(uri);
+				declarationsOnlyURIs.remove(uri);
+				//an open document that was compiled completely may be restored
+				//if the change is undone
+				if (sourceUnit.getSource() instanceof CharSequenceReaderSource && getContentHash(sourceUnit) != null) {
+					previousSourcesByURI.put(uri, sourceUnit);
+				} else {
+					previousSourcesByURI.remove(uri);
+				}
 			}
 		}
 		LanguageServerErrorCollector lsErrorCollector = (LanguageServerErrorCollector) errorCollector;
@@ -71,4 +358,158 @@ public class GroovyLSCompilationUnit extends CompilationUnit {
 	public void removeSource(SourceUnit sourceUnit) {
 		removeSources(Collections.singletonList(sourceUnit));
 	}
-}
\ No newline at end of file
+
+	private byte[] getContentHash(SourceUnit sourceUnit) {
+		if (sourceUnit == null || sourceUnit.getAST() == null
+				|| !(sourceUnit.getSource() instanceof HashedReaderSource)) {
+			return null;
+		}
+		return ((HashedReaderSource) sourceUnit.getSource()).getContentHash();
+	}
+
+	/**
+	 * Returns the names that were used in the bodies that were removed from
+	 * a module of a source that is compiled with its declarations only, or
+	 * null if its bodies weren't removed. The names include the simple names
+	 * of the classes that the bodies referred to.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Set<String> getRemovedBodyNames(ModuleNode module) {
+		if (module == null) {
+			return null;
+		}
+		return (Set<String>) module.getNodeMetaData(REMOVED_BODY_NAMES);
+	}
+
+	private void removeBodies(ModuleNode module) {
+		//the bodies can't refer to other files after they're removed, but
+		//their names are kept, so that the files that may refer to a class
+		//can be found without compiling the bodies again
+		RemovedBodyNamesCollector namesCollector = new RemovedBodyNamesCollector();
+		for (ClassNode classNode : module.getClasses()) {
+			for (MethodNode method : classNode.getMethods()) {
+				namesCollector.visitCode(method.getCode());
+			}
+			for (ConstructorNode constructor : classNode.getDeclaredConstructors()) {
+				namesCollector.visitCode(constructor.getCode());
+			}
+			for (FieldNode field : classNode.getFields()) {
+				Expression initialExpression = field.getInitialExpression();
+				if (initialExpression instanceof ClosureExpression) {
+					initialExpression.visit(namesCollector);
+				}
+			}
+			for (Statement statement : classNode.getObjectInitializerStatements()) {
+				namesCollector.visitCode(statement);
+			}
+		}
+		namesCollector.visitCode(module.getStatementBlock());
+		module.putNodeMetaData(REMOVED_BODY_NAMES, namesCollector.getNames());
+
+		for (ClassNode classNode : module.getClasses()) {
+			for (MethodNode method : classNode.getMethods()) {
+				if (method.getCode() != null) {
+					method.setCode(new BlockStatement());
+				}
+			}
+			for (ConstructorNode constructor : classNode.getDeclaredConstructors()) {
+				if (constructor.getCode() != null) {
+					constructor.setCode(new BlockStatement());
+				}
+			}
+			for (FieldNode field : classNode.getFields()) {
+				Expression initialExpression = field.getInitialExpression();
+				if (initialExpression instanceof ClosureExpression) {
+					((ClosureExpression) initialExpression).setCode(new BlockStatement());
+				}
+			}
+			classNode.getObjectInitializerStatements().clear();
+		}
+		//the statements of a script are also the body of its run() method
+		module.getStatementBlock().getStatements().clear();
+	}
+
+	private static class RemovedBodyNamesCollector extends CodeVisitorSupport {
+		private Set<String> names = new HashSet<>();
+
+		public Set<String> getNames() {
+			return names;
+		}
+
+		public void visitCode(Statement code) {
+			if (code != null) {
+				code.visit(this);
+			}
+		}
+
+		@Override
+		public void visitVariableExpression(VariableExpression expression) {
+			names.add(expression.getName());
+			addType(expression.getOriginType());
+			super.visitVariableExpression(expression);
+		}
+
+		@Override
+		public void visitPropertyExpression(PropertyExpression expression) {
+			String propertyName = expression.getPropertyAsString();
+			if (propertyName != null) {
+				names.add(propertyName);
+			}
+			super.visitPropertyExpression(expression);
+		}
+
+		@Override
+		public void visitConstructorCallExpression(ConstructorCallExpression expression) {
+			addType(expression.getType());
+			super.visitConstructorCallExpression(expression);
+		}
+
+		@Override
+		public void visitClassExpression(ClassExpression expression) {
+			addType(expression.getType());
+			super.visitClassExpression(expression);
+		}
+
+		@Override
+		public void visitCastExpression(CastExpression expression) {
+			addType(expression.getType());
+			super.visitCastExpression(expression);
+		}
+
+		@Override
+		public void visitClosureExpression(ClosureExpression expression) {
+			addParameters(expression.getParameters());
+			super.visitClosureExpression(expression);
+		}
+
+		@Override
+		public void visitForLoop(ForStatement forLoop) {
+			addType(forLoop.getVariableType());
+			super.visitForLoop(forLoop);
+		}
+
+		@Override
+		public void visitCatchStatement(CatchStatement statement) {
+			addType(statement.getExceptionType());
+			super.visitCatchStatement(statement);
+		}
+
+		private void addParameters(Parameter[] parameters) {
+			if (parameters == null) {
+				return;
+			}
+			for (Parameter parameter : parameters) {
+				addType(parameter.getOriginType());
+			}
+		}
+
+		private void addType(ClassNode type) {
+			if (type == null) {
+				return;
+			}
+			//the name may be qualified, or the name of an inner class
+			String name = type.getName();
+			names.add(name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1));
+		}
+	}
+}
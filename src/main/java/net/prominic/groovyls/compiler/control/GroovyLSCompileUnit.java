@@ -0,0 +1,178 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.control;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.CompileUnit;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
+import org.codehaus.groovy.syntax.SyntaxException;
+
+import groovy.lang.GroovyClassLoader;
+
+/**
+ * A CompileUnit that keeps its modules and classes indexed by the URI of
+ * their source, so that a single file's module may be removed or replaced
+ * without rebuilding the whole unit.
+ */
+public class GroovyLSCompileUnit extends CompileUnit {
+	private Map<URI, ModuleNode> modulesByURI = new LinkedHashMap<>();
+	private List<ModuleNode> modulesWithoutURI = new ArrayList<>();
+	private Map<String, ClassNode> classesByName = new HashMap<>();
+
+	public GroovyLSCompileUnit(GroovyClassLoader classLoader, CompilerConfiguration config) {
+		super(classLoader, null, config);
+	}
+
+	@Override
+	public List<ModuleNode> getModules() {
+		List<ModuleNode> result = new ArrayList<>(modulesByURI.values());
+		result.addAll(modulesWithoutURI);
+		return result;
+	}
+
+	@Override
+	public List<ClassNode> getClasses() {
+		List<ClassNode> result = new ArrayList<>();
+		for (ModuleNode module : getModules()) {
+			result.addAll(module.getClasses());
+		}
+		return result;
+	}
+
+	@Override
+	public ClassNode getClass(String name) {
+		ClassNode classNode = classesByName.get(name);
+		if (classNode != null) {
+			return classNode;
+		}
+		return getClassesToCompile().get(name);
+	}
+
+	/**
+	 * Returns a class that is declared in one of the modules, but not a
+	 * class that is only waiting to be compiled.
+	 */
+	public ClassNode getDeclaredClass(String name) {
+		return classesByName.get(name);
+	}
+
+	public ModuleNode getModule(URI uri) {
+		return modulesByURI.get(uri);
+	}
+
+	@Override
+	public void addModule(ModuleNode node) {
+		// node == null means a compilation error prevented groovy from
+		// building an ast
+		if (node == null) {
+			return;
+		}
+		URI uri = getURI(node);
+		if (uri != null) {
+			ModuleNode oldModule = modulesByURI.put(uri, node);
+			if (oldModule != null && oldModule != node) {
+				removeClasses(oldModule);
+			}
+		} else {
+			modulesWithoutURI.add(node);
+		}
+		//sets the module's unit and adds its classes
+		super.addModule(node);
+		//the superclass keeps its own list of modules, but the index replaces
+		//it, and old modules shouldn't be kept in memory
+		List<ModuleNode> superModules = super.getModules();
+		if (!superModules.isEmpty() && superModules.get(superModules.size() - 1) == node) {
+			superModules.remove(superModules.size() - 1);
+		}
+	}
+
+	/**
+	 * Removes a module and its classes. Takes time proportional to the number
+	 * of classes in the module.
+	 */
+	public void removeModule(ModuleNode node) {
+		URI uri = getURI(node);
+		if (uri != null) {
+			if (modulesByURI.get(uri) != node) {
+				return;
+			}
+			modulesByURI.remove(uri);
+		} else if (!modulesWithoutURI.remove(node)) {
+			return;
+		}
+		removeClasses(node);
+	}
+
+	@Override
+	public void addClass(ClassNode node) {
+		node = node.redirect();
+		String name = node.getName();
+		ClassNode stored = classesByName.get(name);
+		if (stored != null && stored != node) {
+			SourceUnit nodeSource = node.getModule().getContext();
+			SourceUnit storedSource = stored.getModule().getContext();
+			String message = "Invalid duplicate class definition of class " + name + " : ";
+			if (nodeSource == storedSource) {
+				message += "The source " + nodeSource.getName() + " contains at least two definitions of the class "
+						+ name + ".\n";
+			} else {
+				message += "The sources " + nodeSource.getName() + " and " + storedSource.getName()
+						+ " each contain a class with the name " + name + ".\n";
+			}
+			nodeSource.getErrorCollector()
+					.addErrorAndContinue(new SyntaxErrorMessage(new SyntaxException(message, node.getLineNumber(),
+							node.getColumnNumber(), node.getLastLineNumber(), node.getLastColumnNumber()),
+							nodeSource));
+		}
+		classesByName.put(name, node);
+
+		ClassNode classToCompile = getClassesToCompile().remove(name);
+		if (classToCompile != null) {
+			classToCompile.setRedirect(node);
+		}
+	}
+
+	private void removeClasses(ModuleNode node) {
+		for (ClassNode classNode : node.getClasses()) {
+			String name = classNode.getName();
+			if (classesByName.get(name) == classNode.redirect()) {
+				classesByName.remove(name);
+			}
+		}
+	}
+
+	private URI getURI(ModuleNode node) {
+		SourceUnit context = node.getContext();
+		if (context == null || context.getSource() == null) {
+			return null;
+		}
+		return context.getSource().getURI();
+	}
+}
@@ -0,0 +1,76 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.control;
+
+import java.io.Reader;
+
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.ParserPlugin;
+import org.codehaus.groovy.control.ParserPluginFactory;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.syntax.ParserException;
+import org.codehaus.groovy.syntax.Reduction;
+
+/**
+ * A source unit keeps its parser after it is converted to an AST, along
+ * with the parser's syntax tree and a copy of the source text. The parsers
+ * created by this factory let go of the real parser once the AST has been
+ * built.
+ */
+public class ReleasingParserPluginFactory extends ParserPluginFactory {
+	private ParserPluginFactory factory;
+
+	public ReleasingParserPluginFactory(ParserPluginFactory factory) {
+		if (factory instanceof ReleasingParserPluginFactory) {
+			factory = ((ReleasingParserPluginFactory) factory).factory;
+		}
+		this.factory = factory;
+	}
+
+	@Override
+	public ParserPlugin createParserPlugin() {
+		return new ReleasingParserPlugin(factory.createParserPlugin());
+	}
+
+	private static class ReleasingParserPlugin implements ParserPlugin {
+		private ParserPlugin plugin;
+
+		public ReleasingParserPlugin(ParserPlugin plugin) {
+			this.plugin = plugin;
+		}
+
+		@Override
+		public Reduction parseCST(SourceUnit sourceUnit, Reader reader) throws CompilationFailedException {
+			return plugin.parseCST(sourceUnit, reader);
+		}
+
+		@Override
+		public ModuleNode buildAST(SourceUnit sourceUnit, ClassLoader classLoader, Reduction cst)
+				throws ParserException {
+			try {
+				return plugin.buildAST(sourceUnit, classLoader, cst);
+			} finally {
+				//the AST is built only once for each source
+				plugin = null;
+			}
+		}
+	}
+}
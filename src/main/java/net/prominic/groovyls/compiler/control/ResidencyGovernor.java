@@ -0,0 +1,183 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.control;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.NotificationEmitter;
+
+/**
+ * Decides which closed files may keep their full ASTs. The most recently
+ * used closed files are kept, and the others may be reduced to their
+ * declarations. When the heap is nearly full after a garbage collection,
+ * fewer files are kept until memory is available again.
+ */
+public class ResidencyGovernor {
+	public static final int DEFAULT_CAPACITY = 200;
+	private static final int MIN_CAPACITY = 8;
+	private static final double PRESSURE_THRESHOLD = 0.75;
+	private static final double RELIEF_THRESHOLD = 0.5;
+
+	private int capacity;
+	private int effectiveCapacity;
+	private Map<URI, Boolean> recentlyUsed;
+	private List<MemoryPoolMXBean> monitoredPools = new ArrayList<>();
+	private boolean monitoring = false;
+
+	public ResidencyGovernor() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public ResidencyGovernor(int capacity) {
+		setCapacity(capacity);
+	}
+
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Sets the maximum number of closed files that keep their full ASTs.
+	 */
+	public synchronized void setCapacity(int capacity) {
+		this.capacity = Math.max(0, capacity);
+		effectiveCapacity = this.capacity;
+		Map<URI, Boolean> oldRecentlyUsed = recentlyUsed;
+		recentlyUsed = new LinkedHashMap<URI, Boolean>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<URI, Boolean> eldest) {
+				return size() > ResidencyGovernor.this.capacity;
+			}
+		};
+		if (oldRecentlyUsed != null) {
+			recentlyUsed.putAll(oldRecentlyUsed);
+		}
+	}
+
+	/**
+	 * The number of closed files that keep their full ASTs right now, which
+	 * may be less than the capacity if the heap is nearly full.
+	 */
+	public synchronized int getEffectiveCapacity() {
+		return effectiveCapacity;
+	}
+
+	public synchronized void touch(URI uri) {
+		recentlyUsed.put(uri, Boolean.TRUE);
+	}
+
+	/**
+	 * Returns the files that should be reduced to their declarations, from
+	 * the closed files that have full ASTs.
+	 */
+	public synchronized Set<URI> selectForEviction(Collection<URI> fullURIs) {
+		updateEffectiveCapacity();
+		Set<URI> result = new HashSet<>(fullURIs);
+		if (result.size() <= effectiveCapacity) {
+			result.clear();
+			return result;
+		}
+		//the most recently used files are at the end
+		List<URI> recent = new ArrayList<>(recentlyUsed.keySet());
+		int kept = 0;
+		for (int i = recent.size() - 1; i >= 0 && kept < effectiveCapacity; i--) {
+			if (result.remove(recent.get(i))) {
+				kept++;
+			}
+		}
+		//any remaining space is filled by files that haven't been used yet
+		Iterator<URI> iterator = result.iterator();
+		while (kept < effectiveCapacity && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			kept++;
+		}
+		return result;
+	}
+
+	/**
+	 * Listens for the notifications that are sent when the heap is nearly
+	 * full after a garbage collection. After the capacity is reduced, the
+	 * listener is called, so that files may be evicted before the next
+	 * compile. It's called from a notification thread.
+	 */
+	public synchronized void startMonitoring(Runnable pressureListener) {
+		if (monitoring) {
+			return;
+		}
+		monitoring = true;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) {
+				continue;
+			}
+			long max = pool.getUsage().getMax();
+			if (max <= 0) {
+				continue;
+			}
+			pool.setCollectionUsageThreshold((long) (max * PRESSURE_THRESHOLD));
+			monitoredPools.add(pool);
+		}
+		NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+		emitter.addNotificationListener((notification, handback) -> {
+			if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+				onPressure();
+				if (pressureListener != null) {
+					pressureListener.run();
+				}
+			}
+		}, null, null);
+	}
+
+	private synchronized void onPressure() {
+		effectiveCapacity = Math.min(effectiveCapacity, Math.max(MIN_CAPACITY, effectiveCapacity / 2));
+	}
+
+	/**
+	 * Keeps all of the recently used files again once the heap has enough
+	 * space after a garbage collection.
+	 */
+	private void updateEffectiveCapacity() {
+		if (effectiveCapacity == capacity || monitoredPools.isEmpty()) {
+			return;
+		}
+		for (MemoryPoolMXBean pool : monitoredPools) {
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage == null || usage.getMax() <= 0 || usage.getUsed() >= usage.getMax() * RELIEF_THRESHOLD) {
+				return;
+			}
+		}
+		effectiveCapacity = capacity;
+	}
+}
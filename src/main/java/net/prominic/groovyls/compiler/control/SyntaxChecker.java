@@ -0,0 +1,61 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.control;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.ErrorCollector;
+import org.codehaus.groovy.control.SourceUnit;
+
+import groovy.lang.GroovyClassLoader;
+
+import net.prominic.groovyls.compiler.control.io.CharSequenceReaderSource;
+
+/**
+ * Parses a single file on its own, without resolving any types, so that its
+ * syntax errors may be reported before the whole workspace is compiled.
+ */
+public class SyntaxChecker {
+	private CompilerConfiguration config = new CompilerConfiguration();
+	//nothing is resolved, so the same class loader is used for every check
+	private GroovyClassLoader classLoader = new GroovyClassLoader();
+
+	/**
+	 * Returns the errors that were found while converting the file to an AST.
+	 */
+	public ErrorCollector check(URI uri, String contents) {
+		ErrorCollector errorCollector = new LanguageServerErrorCollector(config);
+		SourceUnit sourceUnit = new SourceUnit(Paths.get(uri).toString(),
+				new CharSequenceReaderSource(contents, uri, config), config, classLoader, errorCollector);
+		try {
+			//the same steps as the parsing and conversion phases of a
+			//compilation unit, without creating one for every keystroke
+			sourceUnit.parse();
+			sourceUnit.completePhase();
+			sourceUnit.convert();
+		} catch (CompilationFailedException e) {
+			// ignore
+		}
+		return errorCollector;
+	}
+}
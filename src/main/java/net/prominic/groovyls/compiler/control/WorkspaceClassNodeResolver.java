@@ -0,0 +1,66 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.control;
+
+import java.net.URI;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.ClassNodeResolver;
+import org.codehaus.groovy.control.CompilationUnit;
+
+/**
+ * Resolves classes from the workspace to the class nodes that were already
+ * compiled in another compilation unit, so that they don't need to be
+ * compiled again with the files that use them.
+ */
+public class WorkspaceClassNodeResolver extends ClassNodeResolver {
+	private GroovyLSCompilationUnit workspaceUnit;
+
+	public WorkspaceClassNodeResolver(GroovyLSCompilationUnit workspaceUnit) {
+		this.workspaceUnit = workspaceUnit;
+	}
+
+	@Override
+	public LookupResult resolveName(String name, CompilationUnit compilationUnit) {
+		ClassNode classNode = ((GroovyLSCompileUnit) workspaceUnit.getAST()).getDeclaredClass(name);
+		if (classNode != null && !isReplacedBy(classNode, compilationUnit)) {
+			return new LookupResult(null, classNode);
+		}
+		return super.resolveName(name, compilationUnit);
+	}
+
+	/**
+	 * Returns true if the file that declares a class in the workspace unit is
+	 * also a source of the compilation unit, because its open document
+	 * replaces the version on disk, even if it no longer declares the class.
+	 */
+	private boolean isReplacedBy(ClassNode classNode, CompilationUnit compilationUnit) {
+		if (!(compilationUnit instanceof GroovyLSCompilationUnit)) {
+			return false;
+		}
+		ModuleNode module = classNode.getModule();
+		if (module == null || module.getContext() == null) {
+			return false;
+		}
+		URI uri = module.getContext().getSource().getURI();
+		return ((GroovyLSCompilationUnit) compilationUnit).getSourceUnit(uri) != null;
+	}
+}
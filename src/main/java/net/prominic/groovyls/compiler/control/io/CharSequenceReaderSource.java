@@ -0,0 +1,161 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.control.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Janitor;
+import org.codehaus.groovy.control.io.AbstractReaderSource;
+
+/**
+ * Reads a source directly from the text of an open document, without making
+ * a copy. Once a source has been compiled, it may be released so that the
+ * compiler no longer holds on to that version of the document.
+ */
+public class CharSequenceReaderSource extends AbstractReaderSource implements HashedReaderSource {
+	private CharSequence text;
+	private URI uri;
+	private int[] lineStarts;
+	private byte[] contentHash;
+
+	public CharSequenceReaderSource(CharSequence text, URI uri, CompilerConfiguration configuration) {
+		super(configuration);
+		this.text = text;
+		this.uri = uri;
+	}
+
+	@Override
+	public Reader getReader() throws IOException {
+		if (text == null) {
+			throw new IOException("Source has been released: " + uri);
+		}
+		return new CharSequenceReader(text);
+	}
+
+	@Override
+	public boolean canReopenSource() {
+		return text != null;
+	}
+
+	@Override
+	public URI getURI() {
+		return uri;
+	}
+
+	/**
+	 * Returns a line of the text (starting from 1) without reading the lines
+	 * before it, or null if the line doesn't exist or the source has been
+	 * released.
+	 */
+	@Override
+	public String getLine(int lineNumber, Janitor janitor) {
+		if (text == null) {
+			return null;
+		}
+		if (lineStarts == null) {
+			lineStarts = createLineStarts(text);
+		}
+		int index = lineNumber - 1;
+		if (index < 0 || index >= lineStarts.length) {
+			return null;
+		}
+		int start = lineStarts[index];
+		int end = (index + 1 < lineStarts.length) ? lineStarts[index + 1] - 1 : text.length();
+		if (end > start && text.charAt(end - 1) == '\r') {
+			end--;
+		}
+		return text.subSequence(start, end).toString();
+	}
+
+	@Override
+	public byte[] getContentHash() {
+		if (contentHash == null && text != null) {
+			contentHash = ContentHash.of(text);
+		}
+		return contentHash;
+	}
+
+	/**
+	 * Drops the reference to the text. The source can't be read again after
+	 * it has been released, but its hash is kept.
+	 */
+	public void release() {
+		getContentHash();
+		text = null;
+		lineStarts = null;
+	}
+
+	public boolean isReleased() {
+		return text == null;
+	}
+
+	private static int[] createLineStarts(CharSequence text) {
+		int lineCount = 1;
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(i) == '\n') {
+				lineCount++;
+			}
+		}
+		int[] result = new int[lineCount];
+		int line = 1;
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(i) == '\n') {
+				result[line] = i + 1;
+				line++;
+			}
+		}
+		return result;
+	}
+
+	private static class CharSequenceReader extends Reader {
+		private CharSequence text;
+		private int position = 0;
+
+		public CharSequenceReader(CharSequence text) {
+			this.text = text;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			int remaining = text.length() - position;
+			if (remaining <= 0) {
+				return -1;
+			}
+			int count = Math.min(length, remaining);
+			if (text instanceof String) {
+				((String) text).getChars(position, position + count, buffer, offset);
+			} else {
+				for (int i = 0; i < count; i++) {
+					buffer[offset + i] = text.charAt(position + i);
+				}
+			}
+			position += count;
+			return count;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,89 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.control.io;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes an MD5 hash of the characters of a source, so that the contents
+ * of a file may be compared with the version that was compiled without
+ * keeping a copy of its text.
+ */
+public class ContentHash {
+	private static final int BUFFER_SIZE = 8192;
+
+	private MessageDigest digest;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int count = 0;
+
+	public ContentHash() {
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			//every java platform is required to support MD5
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public void update(char[] chars, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			update(chars[i]);
+		}
+	}
+
+	public void update(CharSequence text) {
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			update(text.charAt(i));
+		}
+	}
+
+	public void update(char c) {
+		if (count + 2 > BUFFER_SIZE) {
+			digest.update(buffer, 0, count);
+			count = 0;
+		}
+		buffer[count++] = (byte) (c >> 8);
+		buffer[count++] = (byte) c;
+	}
+
+	public byte[] finish() {
+		digest.update(buffer, 0, count);
+		count = 0;
+		return digest.digest();
+	}
+
+	public static byte[] of(CharSequence text) {
+		ContentHash hash = new ContentHash();
+		hash.update(text);
+		return hash.finish();
+	}
+
+	/**
+	 * Returns true if both hashes are known and equal.
+	 */
+	public static boolean equals(byte[] hash1, byte[] hash2) {
+		if (hash1 == null || hash2 == null) {
+			return false;
+		}
+		return MessageDigest.isEqual(hash1, hash2);
+	}
+}
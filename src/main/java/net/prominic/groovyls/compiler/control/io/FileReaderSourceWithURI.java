@@ -0,0 +1,110 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.control.io;
+
+import java.io.File;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.io.FileReaderSource;
+
+/**
+ * Reads a file from disk, but reports the same URI that the language server
+ * uses for the file. File.toURI() and Path.toUri() format file URIs
+ * differently, so they can't be compared. The contents are hashed while the
+ * compiler reads them.
+ */
+public class FileReaderSourceWithURI extends FileReaderSource implements HashedReaderSource {
+	private URI uri;
+	private byte[] contentHash;
+
+	public FileReaderSourceWithURI(File file, URI uri, CompilerConfiguration configuration) {
+		super(file, configuration);
+		this.uri = uri;
+	}
+
+	@Override
+	public URI getURI() {
+		return uri;
+	}
+
+	@Override
+	public Reader getReader() throws IOException {
+		return new HashingReader(super.getReader());
+	}
+
+	@Override
+	public byte[] getContentHash() {
+		return contentHash;
+	}
+
+	private class HashingReader extends FilterReader {
+		private ContentHash hash = new ContentHash();
+
+		public HashingReader(Reader in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int c = super.read();
+			if (c == -1) {
+				finish();
+			} else if (hash != null) {
+				hash.update((char) c);
+			}
+			return c;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			int count = super.read(buffer, offset, length);
+			if (count == -1) {
+				finish();
+			} else if (hash != null) {
+				hash.update(buffer, offset, count);
+			}
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			//skipped characters would be missing from the hash
+			hash = null;
+			return super.skip(n);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		private void finish() {
+			//only a reader that read everything from the start knows the hash
+			if (hash != null && contentHash == null) {
+				contentHash = hash.finish();
+			}
+			hash = null;
+		}
+	}
+}
@@ -19,20 +19,16 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.compiler.control.io;
 
-import java.net.URI;
+import org.codehaus.groovy.control.io.ReaderSource;
 
-import org.codehaus.groovy.control.CompilerConfiguration;
-import org.codehaus.groovy.control.io.StringReaderSource;
-
-public class StringReaderSourceWithURI extends StringReaderSource {
-	private URI uri;
-
-	public StringReaderSourceWithURI(String string, URI uri, CompilerConfiguration configuration) {
-		super(string, configuration);
-		this.uri = uri;
-	}
-
-	public URI getURI() {
-		return uri;
-	}
-}
\ No newline at end of file
+/**
+ * A source that knows the hash of the contents that the compiler read from
+ * it.
+ */
+public interface HashedReaderSource extends ReaderSource {
+	/**
+	 * Returns the hash of the contents, or null if they haven't been read
+	 * completely.
+	 */
+	byte[] getContentHash();
+}
@@ -0,0 +1,59 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.groovy.ast.MethodNode;
+
+/**
+ * The overloads that may be called by a method or constructor call, and the
+ * best match for each active argument index that has been requested.
+ */
+public class CallSiteResolution {
+	private List<MethodNode> overloads;
+	private Map<Integer, MethodNode> bestMethods = new HashMap<>();
+
+	public CallSiteResolution(List<MethodNode> overloads) {
+		this.overloads = overloads;
+	}
+
+	public List<MethodNode> getOverloads() {
+		return overloads;
+	}
+
+	public boolean hasBestMethod(int argIndex) {
+		return bestMethods.containsKey(argIndex);
+	}
+
+	/**
+	 * Returns the best match for the argument index, which may be null if no
+	 * overload matches.
+	 */
+	public MethodNode getBestMethod(int argIndex) {
+		return bestMethods.get(argIndex);
+	}
+
+	public void setBestMethod(int argIndex, MethodNode method) {
+		bestMethods.put(argIndex, method);
+	}
+}
@@ -0,0 +1,214 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.ConstructorNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+/**
+ * Finds the name tokens of class, method, property and field declarations in
+ * the text of a file, because the AST only knows where the whole declaration
+ * starts and ends. The text is requested once, and only if a name needs to
+ * be found. Comments and string literals are skipped.
+ */
+public class DeclarationNameFinder {
+	private static final Set<String> TYPE_KEYWORDS = new HashSet<>(
+			Arrays.asList("class", "interface", "enum", "trait"));
+
+	private Supplier<String> contentsSupplier;
+	private String text;
+	private int[] lineStarts;
+
+	public DeclarationNameFinder(Supplier<String> contentsSupplier) {
+		this.contentsSupplier = contentsSupplier;
+	}
+
+	/**
+	 * Returns the range of the name of the declaration, or null if the node
+	 * isn't a supported declaration or if the name can't be found.
+	 */
+	public Range findNameRange(ASTNode node) {
+		if (node.getLineNumber() == -1) {
+			return null;
+		}
+		if (node instanceof ClassNode) {
+			ClassNode classNode = (ClassNode) node;
+			String className = classNode.getNameWithoutPackage();
+			int dollarIndex = className.lastIndexOf('$');
+			if (dollarIndex != -1) {
+				// it's an inner class, so remove the outer name prefix
+				className = className.substring(dollarIndex + 1);
+			}
+			return findName(node, className, true, false);
+		}
+		if (node instanceof ConstructorNode) {
+			return null;
+		}
+		if (node instanceof MethodNode) {
+			return findName(node, ((MethodNode) node).getName(), false, true);
+		}
+		if (node instanceof PropertyNode) {
+			return findName(node, ((PropertyNode) node).getName(), false, false);
+		}
+		if (node instanceof FieldNode) {
+			return findName(node, ((FieldNode) node).getName(), false, false);
+		}
+		return null;
+	}
+
+	private Range findName(ASTNode node, String name, boolean afterTypeKeyword, boolean beforeParen) {
+		if (!loadText()) {
+			return null;
+		}
+		int start = getOffset(node.getLineNumber() - 1, node.getColumnNumber() - 1);
+		int end = text.length();
+		if (node.getLastLineNumber() != -1) {
+			end = Math.min(end, getOffset(node.getLastLineNumber() - 1, node.getLastColumnNumber() - 1));
+		}
+		if (start == -1) {
+			return null;
+		}
+		boolean previousWasTypeKeyword = false;
+		int i = start;
+		while (i < end) {
+			char c = text.charAt(i);
+			if (c == '/' && i + 1 < end && text.charAt(i + 1) == '/') {
+				i = skipLineComment(i, end);
+			} else if (c == '/' && i + 1 < end && text.charAt(i + 1) == '*') {
+				i = skipBlockComment(i, end);
+			} else if (c == '"' || c == '\'') {
+				i = skipString(i, end);
+			} else if (Character.isJavaIdentifierStart(c)) {
+				int tokenStart = i;
+				i++;
+				while (i < end && Character.isJavaIdentifierPart(text.charAt(i))) {
+					i++;
+				}
+				if (isToken(tokenStart, i, name) && (!afterTypeKeyword || previousWasTypeKeyword)
+						&& (!beforeParen || isFollowedByParen(i, end))) {
+					return new Range(getPosition(tokenStart), getPosition(i));
+				}
+				previousWasTypeKeyword = TYPE_KEYWORDS.contains(text.substring(tokenStart, i));
+			} else {
+				i++;
+			}
+		}
+		// couldn't find the name!
+		return null;
+	}
+
+	private boolean loadText() {
+		if (text == null && contentsSupplier != null) {
+			text = contentsSupplier.get();
+			contentsSupplier = null;
+			if (text != null) {
+				lineStarts = createLineStarts(text);
+			}
+		}
+		return text != null;
+	}
+
+	private boolean isToken(int start, int end, String name) {
+		return end - start == name.length() && text.regionMatches(start, name, 0, name.length());
+	}
+
+	private boolean isFollowedByParen(int offset, int end) {
+		while (offset < end && Character.isWhitespace(text.charAt(offset))) {
+			offset++;
+		}
+		return offset < end && text.charAt(offset) == '(';
+	}
+
+	private int skipLineComment(int offset, int end) {
+		while (offset < end && text.charAt(offset) != '\n') {
+			offset++;
+		}
+		return offset;
+	}
+
+	private int skipBlockComment(int offset, int end) {
+		int closeIndex = text.indexOf("*/", offset + 2);
+		if (closeIndex == -1 || closeIndex + 2 > end) {
+			return end;
+		}
+		return closeIndex + 2;
+	}
+
+	private int skipString(int offset, int end) {
+		char quote = text.charAt(offset);
+		offset++;
+		while (offset < end) {
+			char c = text.charAt(offset);
+			if (c == '\\') {
+				offset += 2;
+				continue;
+			}
+			offset++;
+			if (c == quote) {
+				break;
+			}
+		}
+		return offset;
+	}
+
+	private int getOffset(int line, int column) {
+		if (line < 0 || line >= lineStarts.length || column < 0) {
+			return -1;
+		}
+		return Math.min(lineStarts[line] + column, text.length());
+	}
+
+	private Position getPosition(int offset) {
+		int line = Arrays.binarySearch(lineStarts, offset);
+		if (line < 0) {
+			line = -line - 2;
+		}
+		return new Position(line, offset - lineStarts[line]);
+	}
+
+	private static int[] createLineStarts(String text) {
+		int lineCount = 1;
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) == '\n') {
+				lineCount++;
+			}
+		}
+		int[] result = new int[lineCount];
+		int line = 1;
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) == '\n') {
+				result[line] = i + 1;
+				line++;
+			}
+		}
+		return result;
+	}
+}
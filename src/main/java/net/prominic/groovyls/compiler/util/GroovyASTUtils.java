@@ -19,9 +19,11 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.compiler.util;
 
+import java.net.URI;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.codehaus.groovy.ast.ASTNode;
@@ -29,6 +31,7 @@ import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.FieldNode;
 import org.codehaus.groovy.ast.ImportNode;
 import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.groovy.ast.Parameter;
 import org.codehaus.groovy.ast.PropertyNode;
 import org.codehaus.groovy.ast.Variable;
@@ -45,18 +48,15 @@ import org.codehaus.groovy.ast.expr.PropertyExpression;
 import org.codehaus.groovy.ast.expr.VariableExpression;
 import org.codehaus.groovy.ast.stmt.ExpressionStatement;
 
+import net.prominic.groovyls.compiler.ast.ASTNodeCache;
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 
 public class GroovyASTUtils {
     public static ClassNode getEnclosingClass(ASTNode node, ASTNodeVisitor astVisitor) {
-        ASTNode current = node;
-        while (current != null) {
-            if (current instanceof ClassNode) {
-                return (ClassNode) current;
-            }
-            current = astVisitor.getParent(current);
+        if (node instanceof ClassNode) {
+            return (ClassNode) node;
         }
-        return null;
+        return astVisitor.getEnclosingClass(node);
     }
 
     public static ASTNode getDefinition(ASTNode node, boolean strict, ASTNodeVisitor astVisitor) {
@@ -137,8 +137,9 @@ public class GroovyASTUtils {
     }
 
     private static ClassNode tryToResolveOriginalClassNode(ClassNode node, boolean strict, ASTNodeVisitor ast) {
-        for (ClassNode originalNode : ast.getClassNodes()) {
-            if (originalNode.equals(node)) {
+        if (node != null) {
+            ClassNode originalNode = ast.getClassNodeByName(node.getName());
+            if (originalNode != null) {
                 return originalNode;
             }
         }
@@ -164,42 +165,94 @@ public class GroovyASTUtils {
         return null;
     }
 
-    public static List<FieldNode> getFieldsForLeftSideOfPropertyExpression(Expression node, ASTNodeVisitor astVisitor) {
-        ClassNode classNode = getTypeOfNode(node, astVisitor);
-        if (classNode != null) {
-            boolean statics = node instanceof ClassExpression;
-            return classNode.getFields().stream().filter(fieldNode -> {
-                return statics ? fieldNode.isStatic() : !fieldNode.isStatic();
-            }).collect(Collectors.toList());
+    public static MemberTable.Scope getScopeForLeftSideOfPropertyExpression(Expression node) {
+        if (node instanceof ClassExpression) {
+            return MemberTable.Scope.STATIC;
         }
-        return Collections.emptyList();
+        return MemberTable.Scope.INSTANCE;
     }
 
-    public static List<PropertyNode> getPropertiesForLeftSideOfPropertyExpression(Expression node,
-            ASTNodeVisitor astVisitor) {
-        ClassNode classNode = getTypeOfNode(node, astVisitor);
-        if (classNode != null) {
-            boolean statics = node instanceof ClassExpression;
-            return classNode.getProperties().stream().filter(propNode -> {
-                return statics ? propNode.isStatic() : !propNode.isStatic();
-            }).collect(Collectors.toList());
+    public static MemberTable getMemberTable(ClassNode classNode, ASTNodeVisitor astVisitor) {
+        ClassNode key = getLatestClassNode(classNode.redirect(), astVisitor);
+        ASTNodeCache<MemberTable> memberTableCache = astVisitor.getMemberTableCache();
+        if (memberTableCache.containsKey(key)) {
+            return memberTableCache.get(key);
         }
-        return Collections.emptyList();
+        MemberTable memberTable = new MemberTable(key);
+        Set<URI> dependencies = new HashSet<>();
+        for (ClassNode hierarchyNode : memberTable.getHierarchy()) {
+            URI uri = getSourceURI(hierarchyNode);
+            if (uri != null) {
+                dependencies.add(uri);
+            }
+        }
+        if (dependencies.isEmpty()) {
+            //only precompiled classes, which won't change
+            memberTableCache.putPermanent(key, memberTable);
+        } else {
+            memberTableCache.put(key, memberTable, dependencies);
+        }
+        return memberTable;
     }
 
-    public static List<MethodNode> getMethodsForLeftSideOfPropertyExpression(Expression node,
-            ASTNodeVisitor astVisitor) {
-        ClassNode classNode = getTypeOfNode(node, astVisitor);
-        if (classNode != null) {
-            boolean statics = node instanceof ClassExpression;
-            return classNode.getMethods().stream().filter(methodNode -> {
-                return statics ? methodNode.isStatic() : !methodNode.isStatic();
-            }).collect(Collectors.toList());
+    /**
+     * Returns the most recently compiled version of a class that is declared
+     * in a source file. Files that haven't changed aren't compiled again, so
+     * they may still refer to an older version of a class from another file.
+     */
+    public static ClassNode getLatestClassNode(ClassNode classNode, ASTNodeVisitor astVisitor) {
+        if (classNode == null || classNode.isArray() || getSourceURI(classNode) == null) {
+            return classNode;
         }
-        return Collections.emptyList();
+        ClassNode latestNode = astVisitor.getClassNodeByName(classNode.getName());
+        if (latestNode == null || latestNode == classNode.redirect()) {
+            //keep any generics when the class is already up to date
+            return classNode;
+        }
+        return latestNode;
+    }
+
+    /**
+     * Returns the URI of the file that declares a class, or null if the class
+     * is precompiled.
+     */
+    public static URI getSourceURI(ClassNode classNode) {
+        ModuleNode module = classNode.redirect().getModule();
+        if (module == null || module.getContext() == null) {
+            return null;
+        }
+        return module.getContext().getSource().getURI();
     }
 
     public static ClassNode getTypeOfNode(ASTNode node, ASTNodeVisitor astVisitor) {
+        ASTNodeCache<ClassNode> typeCache = astVisitor.getTypeCache();
+        if (typeCache.containsKey(node)) {
+            return typeCache.get(node);
+        }
+        if (!typeCache.beginCompute(node)) {
+            //the type of this node depends on itself, so fall back to the
+            //type that the compiler knows about
+            if (node instanceof Expression) {
+                return ((Expression) node).getType();
+            }
+            return null;
+        }
+        ClassNode result = null;
+        try {
+            typeCache.addDependency(astVisitor.getURI(node));
+            result = getLatestClassNode(computeTypeOfNode(node, astVisitor), astVisitor);
+            if (result != null) {
+                typeCache.addDependency(getSourceURI(result));
+            }
+        } catch (RuntimeException e) {
+            typeCache.cancelCompute(node);
+            throw e;
+        }
+        typeCache.endCompute(node, result);
+        return result;
+    }
+
+    private static ClassNode computeTypeOfNode(ASTNode node, ASTNodeVisitor astVisitor) {
         if (node instanceof BinaryExpression) {
             BinaryExpression binaryExpr = (BinaryExpression) node;
             Expression leftExpr = binaryExpr.getLeftExpression();
@@ -261,6 +314,44 @@ public class GroovyASTUtils {
     }
 
     public static List<MethodNode> getMethodOverloadsFromCallExpression(MethodCall node, ASTNodeVisitor astVisitor) {
+        CallSiteResolution resolution = getCallSiteResolution(node, astVisitor);
+        if (resolution == null) {
+            return computeMethodOverloadsFromCallExpression(node, astVisitor);
+        }
+        return resolution.getOverloads();
+    }
+
+    private static CallSiteResolution getCallSiteResolution(MethodCall node, ASTNodeVisitor astVisitor) {
+        ASTNode callNode = (ASTNode) node;
+        ASTNodeCache<CallSiteResolution> callSiteCache = astVisitor.getCallSiteCache();
+        if (callSiteCache.containsKey(callNode)) {
+            return callSiteCache.get(callNode);
+        }
+        if (!callSiteCache.beginCompute(callNode)) {
+            //already resolving this call
+            return null;
+        }
+        CallSiteResolution resolution = null;
+        try {
+            callSiteCache.addDependency(astVisitor.getURI(callNode));
+            List<MethodNode> overloads = computeMethodOverloadsFromCallExpression(node, astVisitor);
+            for (MethodNode overload : overloads) {
+                ClassNode declaringClass = overload.getDeclaringClass();
+                if (declaringClass != null) {
+                    callSiteCache.addDependency(getSourceURI(declaringClass));
+                }
+            }
+            resolution = new CallSiteResolution(overloads);
+        } catch (RuntimeException e) {
+            callSiteCache.cancelCompute(callNode);
+            throw e;
+        }
+        callSiteCache.endCompute(callNode, resolution);
+        return resolution;
+    }
+
+    private static List<MethodNode> computeMethodOverloadsFromCallExpression(MethodCall node,
+            ASTNodeVisitor astVisitor) {
         if (node instanceof MethodCallExpression) {
             MethodCallExpression methodCallExpr = (MethodCallExpression) node;
             ClassNode leftType = getTypeOfNode(methodCallExpr.getObjectExpression(), astVisitor);
@@ -269,7 +360,7 @@ public class GroovyASTUtils {
             }
         } else if (node instanceof ConstructorCallExpression) {
             ConstructorCallExpression constructorCallExpr = (ConstructorCallExpression) node;
-            ClassNode constructorType = constructorCallExpr.getType();
+            ClassNode constructorType = getLatestClassNode(constructorCallExpr.getType(), astVisitor);
             if (constructorType != null) {
                 return constructorType.getDeclaredConstructors().stream().map(constructor -> (MethodNode) constructor)
                         .collect(Collectors.toList());
@@ -283,32 +374,61 @@ public class GroovyASTUtils {
     }
 
     public static MethodNode getMethodFromCallExpression(MethodCall node, ASTNodeVisitor astVisitor, int argIndex) {
-        List<MethodNode> possibleMethods = getMethodOverloadsFromCallExpression(node, astVisitor);
-        if (!possibleMethods.isEmpty() && node.getArguments() instanceof ArgumentListExpression) {
-            ArgumentListExpression actualArguments = (ArgumentListExpression) node.getArguments();
-            MethodNode foundMethod = possibleMethods.stream().max(new Comparator<MethodNode>() {
-                public int compare(MethodNode m1, MethodNode m2) {
-                    Parameter[] p1 = m1.getParameters();
-                    Parameter[] p2 = m2.getParameters();
-                    int m1Value = calculateArgumentsScore(p1, actualArguments, argIndex);
-                    int m2Value = calculateArgumentsScore(p2, actualArguments, argIndex);
-                    if (m1Value > m2Value) {
-                        return 1;
-                    } else if (m1Value < m2Value) {
-                        return -1;
-                    }
-                    return 0;
-                }
-            }).orElse(null);
-            return foundMethod;
+        CallSiteResolution resolution = getCallSiteResolution(node, astVisitor);
+        if (resolution == null) {
+            return findBestMethod(computeMethodOverloadsFromCallExpression(node, astVisitor), node, argIndex);
         }
-        return null;
+        if (!resolution.hasBestMethod(argIndex)) {
+            resolution.setBestMethod(argIndex, findBestMethod(resolution.getOverloads(), node, argIndex));
+        }
+        return resolution.getBestMethod(argIndex);
+    }
+
+    private static MethodNode findBestMethod(List<MethodNode> possibleMethods, MethodCall node, int argIndex) {
+        if (!(node.getArguments() instanceof ArgumentListExpression)) {
+            return null;
+        }
+        return findBestMethod(possibleMethods, getArgumentTypes(node), argIndex);
+    }
+
+    /**
+     * Returns the types of the arguments passed to a method call, or null if
+     * the arguments aren't a simple list.
+     */
+    public static List<ClassNode> getArgumentTypes(MethodCall node) {
+        if (!(node.getArguments() instanceof ArgumentListExpression)) {
+            return null;
+        }
+        ArgumentListExpression arguments = (ArgumentListExpression) node.getArguments();
+        return arguments.getExpressions().stream().map(Expression::getType).collect(Collectors.toList());
+    }
+
+    /**
+     * Picks the overload that best matches the argument types. An argument
+     * type may be null if it isn't known.
+     */
+    public static MethodNode findBestMethod(List<MethodNode> possibleMethods, List<ClassNode> argumentTypes,
+            int argIndex) {
+        if (possibleMethods.isEmpty()) {
+            return null;
+        }
+        //score each method once, and keep the first one when scores are equal
+        MethodNode foundMethod = null;
+        int foundScore = Integer.MIN_VALUE;
+        for (MethodNode method : possibleMethods) {
+            int score = calculateArgumentsScore(method.getParameters(), argumentTypes, argIndex);
+            if (foundMethod == null || score > foundScore) {
+                foundMethod = method;
+                foundScore = score;
+            }
+        }
+        return foundMethod;
     }
 
-    private static int calculateArgumentsScore(Parameter[] parameters, ArgumentListExpression arguments, int argIndex) {
+    private static int calculateArgumentsScore(Parameter[] parameters, List<ClassNode> argumentTypes, int argIndex) {
         int score = 0;
         int paramCount = parameters.length;
-        int expressionsCount = arguments.getExpressions().size();
+        int expressionsCount = argumentTypes.size();
         int argsCount = expressionsCount;
         if (argIndex >= argsCount) {
             argsCount = argIndex + 1;
@@ -318,7 +438,7 @@ public class GroovyASTUtils {
             score++;
         }
         for (int i = 0; i < minCount; i++) {
-            ClassNode argType = (i < expressionsCount) ? arguments.getExpression(i).getType() : null;
+            ClassNode argType = (i < expressionsCount) ? argumentTypes.get(i) : null;
             ClassNode paramType = (i < paramCount) ? parameters[i].getType() : null;
             if (argType != null && paramType != null) {
                 if (argType.equals(paramType)) {
@@ -0,0 +1,260 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.util;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.codehaus.groovy.runtime.DefaultGroovyMethods;
+import org.codehaus.groovy.runtime.DefaultGroovyStaticMethods;
+import org.codehaus.groovy.transform.stc.ExtensionMethodNode;
+
+/**
+ * The properties, fields and methods of a class, including the ones that it
+ * inherits from its superclasses and interfaces, and the GDK methods that
+ * Groovy adds to any of them. Members are sorted by name, so that the ones
+ * that start with a prefix may be found with a binary search.
+ */
+public class MemberTable {
+	public enum Scope {
+		INSTANCE, STATIC, ALL
+	}
+
+	private static final ClassNode DEPRECATED_TYPE = ClassHelper.make(Deprecated.class);
+
+	private static Map<String, List<MethodNode>> extensionMethodsBySelfType;
+	private static Map<String, List<MethodNode>> staticExtensionMethodsBySelfType;
+
+	private List<ClassNode> hierarchy;
+	private Map<Scope, List<PropertyNode>> properties = new HashMap<>();
+	private Map<Scope, List<FieldNode>> fields = new HashMap<>();
+	private Map<Scope, List<MethodNode>> methods = new HashMap<>();
+
+	public MemberTable(ClassNode classNode) {
+		hierarchy = collectHierarchy(classNode.redirect());
+
+		//members of subclasses hide members of superclasses with the same
+		//name (or signature, for methods)
+		Map<String, PropertyNode> propertiesByName = new LinkedHashMap<>();
+		Map<String, FieldNode> fieldsByName = new LinkedHashMap<>();
+		Map<String, MethodNode> methodsBySignature = new LinkedHashMap<>();
+		for (ClassNode current : hierarchy) {
+			boolean isSource = current.getModule() != null;
+			boolean isSelf = current == hierarchy.get(0);
+			for (PropertyNode property : current.getProperties()) {
+				propertiesByName.putIfAbsent(property.getName(), property);
+			}
+			for (FieldNode field : current.getFields()) {
+				if (field.isSynthetic() || !isVisible(field.getModifiers(), isSource, isSelf)) {
+					continue;
+				}
+				//sometimes, a property and a field will have the same name
+				if (!propertiesByName.containsKey(field.getName())) {
+					fieldsByName.putIfAbsent(field.getName(), field);
+				}
+			}
+			for (MethodNode method : current.getMethods()) {
+				if (method.isSynthetic() || !isVisible(method.getModifiers(), isSource, isSelf)) {
+					continue;
+				}
+				methodsBySignature.putIfAbsent(getSignature(method), method);
+			}
+		}
+		for (ClassNode current : hierarchy) {
+			addExtensionMethods(current, methodsBySignature);
+		}
+		if (classNode.isArray() && !ClassHelper.isPrimitiveType(classNode.getComponentType())) {
+			addExtensionMethods(ClassHelper.OBJECT_TYPE.makeArray(), methodsBySignature);
+		}
+
+		splitByScope(new ArrayList<>(propertiesByName.values()), PropertyNode::getName, PropertyNode::isStatic,
+				properties);
+		splitByScope(new ArrayList<>(fieldsByName.values()), FieldNode::getName, FieldNode::isStatic, fields);
+		splitByScope(new ArrayList<>(methodsBySignature.values()), MethodNode::getName, MethodNode::isStatic,
+				methods);
+	}
+
+	/**
+	 * The class, followed by its superclasses and all of their interfaces.
+	 */
+	public List<ClassNode> getHierarchy() {
+		return hierarchy;
+	}
+
+	public List<PropertyNode> getProperties(Scope scope, String prefix) {
+		return prefixRange(properties.get(scope), PropertyNode::getName, prefix);
+	}
+
+	public List<FieldNode> getFields(Scope scope, String prefix) {
+		return prefixRange(fields.get(scope), FieldNode::getName, prefix);
+	}
+
+	/**
+	 * Returns the methods that start with the prefix. Overloads are adjacent
+	 * to each other because the methods are sorted by name.
+	 */
+	public List<MethodNode> getMethods(Scope scope, String prefix) {
+		return prefixRange(methods.get(scope), MethodNode::getName, prefix);
+	}
+
+	private static List<ClassNode> collectHierarchy(ClassNode classNode) {
+		Set<ClassNode> result = new LinkedHashSet<>();
+		Set<ClassNode> interfaces = new LinkedHashSet<>();
+		ClassNode current = classNode;
+		while (current != null) {
+			result.add(current.redirect());
+			interfaces.addAll(current.getAllInterfaces());
+			current = current.getSuperClass();
+		}
+		for (ClassNode interfaceNode : interfaces) {
+			result.add(interfaceNode.redirect());
+		}
+		//interfaces don't have a superclass, but their implementations are
+		//always objects
+		result.add(ClassHelper.OBJECT_TYPE);
+		return new ArrayList<>(result);
+	}
+
+	private static boolean isVisible(int modifiers, boolean isSource, boolean isSelf) {
+		if (Modifier.isPrivate(modifiers)) {
+			//private members are only visible in the source code of the same
+			//class
+			return isSource && isSelf;
+		}
+		if (!isSource) {
+			//the internals of precompiled classes aren't interesting
+			return Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers);
+		}
+		return true;
+	}
+
+	private static String getSignature(MethodNode method) {
+		StringBuilder builder = new StringBuilder();
+		builder.append(method.getName());
+		builder.append("(");
+		for (Parameter parameter : method.getParameters()) {
+			builder.append(parameter.getType().getName());
+			builder.append(",");
+		}
+		builder.append(")");
+		return builder.toString();
+	}
+
+	private static void addExtensionMethods(ClassNode selfType, Map<String, MethodNode> methodsBySignature) {
+		initExtensionMethods();
+		List<MethodNode> extensionMethods = extensionMethodsBySelfType.get(selfType.getName());
+		if (extensionMethods != null) {
+			for (MethodNode method : extensionMethods) {
+				methodsBySignature.putIfAbsent(getSignature(method), method);
+			}
+		}
+		List<MethodNode> staticExtensionMethods = staticExtensionMethodsBySelfType.get(selfType.getName());
+		if (staticExtensionMethods != null) {
+			for (MethodNode method : staticExtensionMethods) {
+				methodsBySignature.putIfAbsent(getSignature(method), method);
+			}
+		}
+	}
+
+	private static synchronized void initExtensionMethods() {
+		if (extensionMethodsBySelfType != null) {
+			return;
+		}
+		extensionMethodsBySelfType = new HashMap<>();
+		for (Class<?> extensionClass : DefaultGroovyMethods.DGM_LIKE_CLASSES) {
+			addExtensionClass(extensionClass, false, extensionMethodsBySelfType);
+		}
+		staticExtensionMethodsBySelfType = new HashMap<>();
+		addExtensionClass(DefaultGroovyStaticMethods.class, true, staticExtensionMethodsBySelfType);
+	}
+
+	private static void addExtensionClass(Class<?> extensionClass, boolean isStaticExtension,
+			Map<String, List<MethodNode>> methodsBySelfType) {
+		ClassNode extensionClassNode = ClassHelper.make(extensionClass);
+		for (MethodNode method : extensionClassNode.getMethods()) {
+			Parameter[] parameters = method.getParameters();
+			if (!method.isPublic() || !method.isStatic() || parameters.length == 0
+					|| !method.getAnnotations(DEPRECATED_TYPE).isEmpty()) {
+				continue;
+			}
+			ClassNode selfType = parameters[0].getType();
+			Parameter[] extensionParameters = new Parameter[parameters.length - 1];
+			System.arraycopy(parameters, 1, extensionParameters, 0, extensionParameters.length);
+			int modifiers = isStaticExtension ? Modifier.PUBLIC | Modifier.STATIC : Modifier.PUBLIC;
+			ExtensionMethodNode extensionMethod = new ExtensionMethodNode(method, method.getName(), modifiers,
+					method.getReturnType(), extensionParameters, method.getExceptions(), null, isStaticExtension);
+			extensionMethod.setDeclaringClass(selfType);
+			methodsBySelfType.computeIfAbsent(selfType.getName(), key -> new ArrayList<>()).add(extensionMethod);
+		}
+	}
+
+	private static <T> void splitByScope(List<T> members, Function<T, String> toName, Function<T, Boolean> isStatic,
+			Map<Scope, List<T>> result) {
+		members.sort(Comparator.comparing(toName));
+		List<T> instanceMembers = new ArrayList<>();
+		List<T> staticMembers = new ArrayList<>();
+		for (T member : members) {
+			if (isStatic.apply(member)) {
+				staticMembers.add(member);
+			} else {
+				instanceMembers.add(member);
+			}
+		}
+		result.put(Scope.ALL, Collections.unmodifiableList(members));
+		result.put(Scope.INSTANCE, Collections.unmodifiableList(instanceMembers));
+		result.put(Scope.STATIC, Collections.unmodifiableList(staticMembers));
+	}
+
+	private static <T> List<T> prefixRange(List<T> sortedMembers, Function<T, String> toName, String prefix) {
+		if (prefix.length() == 0) {
+			return sortedMembers;
+		}
+		int low = 0;
+		int high = sortedMembers.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (toName.apply(sortedMembers.get(middle)).compareTo(prefix) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		int end = low;
+		while (end < sortedMembers.size() && toName.apply(sortedMembers.get(end)).startsWith(prefix)) {
+			end++;
+		}
+		return sortedMembers.subList(low, end);
+	}
+}
@@ -0,0 +1,201 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Directories that contain classes compiled by the project's build. A source
+ * file that was compiled to one of these directories after it was last
+ * modified only needs its declarations, and classes that don't have sources
+ * in the workspace may be loaded from the class files.
+ */
+public class BuildOutputs {
+	private static final List<String> DETECTED_DIRECTORIES = Arrays.asList("build/classes/groovy/main",
+			"build/classes/java/main", "target/classes");
+	private static final String FILE_EXTENSION_GROOVY = ".groovy";
+	private static final String FILE_EXTENSION_CLASS = ".class";
+	private static final Pattern PACKAGE_PATTERN = Pattern.compile("^\\s*package\\s+([\\w.]+)", Pattern.MULTILINE);
+	private static final Pattern NAME_PATTERN = Pattern.compile("\\s+(\\w+)");
+	private static final List<String> CLASS_KEYWORDS = Arrays.asList("class", "interface", "enum", "trait");
+
+	private List<Path> directories;
+
+	public BuildOutputs(List<Path> directories) {
+		this.directories = directories.stream().filter(directory -> Files.isDirectory(directory))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Finds the directories where Gradle and Maven put the classes compiled
+	 * from the main sources of a workspace.
+	 */
+	public static BuildOutputs detect(Path workspaceRoot) {
+		List<Path> directories = new ArrayList<>();
+		for (String directory : DETECTED_DIRECTORIES) {
+			directories.add(workspaceRoot.resolve(directory));
+		}
+		return new BuildOutputs(directories);
+	}
+
+	public List<Path> getDirectories() {
+		return directories;
+	}
+
+	public boolean isEmpty() {
+		return directories.isEmpty();
+	}
+
+	/**
+	 * Returns true if every top-level class declared by a source file exists
+	 * in one of the directories, and none of them is older than the source
+	 * file. A class with the same name as the file is expected if the file
+	 * doesn't declare any classes, because it is a script.
+	 */
+	public boolean isUpToDate(Path sourceFile) {
+		if (directories.isEmpty()) {
+			return false;
+		}
+		String fileName = sourceFile.getFileName().toString();
+		if (!fileName.endsWith(FILE_EXTENSION_GROOVY)) {
+			return false;
+		}
+		long sourceModified = 0;
+		String contents = null;
+		try {
+			sourceModified = Files.getLastModifiedTime(sourceFile).toMillis();
+			contents = new String(Files.readAllBytes(sourceFile), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return false;
+		}
+		String packagePath = "";
+		Matcher packageMatcher = PACKAGE_PATTERN.matcher(contents);
+		if (packageMatcher.find()) {
+			packagePath = packageMatcher.group(1).replace('.', '/') + "/";
+		}
+		String fileClassName = fileName.substring(0, fileName.length() - FILE_EXTENSION_GROOVY.length());
+		List<String> classNames = readTopLevelClassNames(contents);
+		if (classNames.isEmpty()) {
+			classNames.add(fileClassName);
+		}
+		for (String className : classNames) {
+			Long classModified = getClassModified(packagePath + className + FILE_EXTENSION_CLASS);
+			if (classModified == null || classModified < sourceModified) {
+				return false;
+			}
+		}
+		if (!classNames.contains(fileClassName)) {
+			//a script class next to the declared classes must be up to date
+			//too, if it was built
+			Long classModified = getClassModified(packagePath + fileClassName + FILE_EXTENSION_CLASS);
+			if (classModified != null && classModified < sourceModified) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the time when a class file in one of the directories was
+	 * modified, or null if it doesn't exist.
+	 */
+	private Long getClassModified(String classFile) {
+		for (Path directory : directories) {
+			Path classPath = directory.resolve(classFile);
+			try {
+				if (Files.isRegularFile(classPath)) {
+					return Files.getLastModifiedTime(classPath).toMillis();
+				}
+			} catch (IOException e) {
+				// try the next directory
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the names of the classes, interfaces, enums and traits declared
+	 * outside of braces, skipping comments and strings.
+	 */
+	private List<String> readTopLevelClassNames(String contents) {
+		List<String> classNames = new ArrayList<>();
+		int depth = 0;
+		int length = contents.length();
+		int i = 0;
+		while (i < length) {
+			char c = contents.charAt(i);
+			if (c == '/' && i + 1 < length && contents.charAt(i + 1) == '/') {
+				i = contents.indexOf('\n', i);
+				if (i == -1) {
+					break;
+				}
+			} else if (c == '/' && i + 1 < length && contents.charAt(i + 1) == '*') {
+				i = contents.indexOf("*/", i + 2);
+				if (i == -1) {
+					break;
+				}
+				i += 2;
+				continue;
+			} else if (c == '"' || c == '\'') {
+				String quote = contents.startsWith(String.valueOf(c) + c + c, i) ? String.valueOf(c) + c + c
+						: String.valueOf(c);
+				i += quote.length();
+				while (i < length && !contents.startsWith(quote, i)) {
+					i += (contents.charAt(i) == '\\') ? 2 : 1;
+				}
+				i += quote.length();
+				continue;
+			} else if (c == '{') {
+				depth++;
+			} else if (c == '}') {
+				depth--;
+			} else if (depth == 0 && Character.isJavaIdentifierStart(c)
+					&& (i == 0 || !Character.isJavaIdentifierPart(contents.charAt(i - 1)))) {
+				int end = i;
+				while (end < length && Character.isJavaIdentifierPart(contents.charAt(end))) {
+					end++;
+				}
+				String word = contents.substring(i, end);
+				//Foo.class is a class literal, and not a declaration
+				boolean isLiteral = i > 0 && contents.charAt(i - 1) == '.';
+				if (!isLiteral && CLASS_KEYWORDS.contains(word)) {
+					Matcher matcher = NAME_PATTERN.matcher(contents);
+					if (matcher.find(end) && matcher.start() == end) {
+						classNames.add(matcher.group(1));
+						end = matcher.end();
+					}
+				}
+				i = end;
+				continue;
+			}
+			i++;
+		}
+		return classNames;
+	}
+}
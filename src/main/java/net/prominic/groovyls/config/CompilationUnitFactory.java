@@ -19,52 +19,187 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.config;
 
-import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.SourceUnit;
 
 import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
-import net.prominic.groovyls.compiler.control.io.StringReaderSourceWithURI;
+import net.prominic.groovyls.compiler.control.WorkspaceClassNodeResolver;
+import net.prominic.groovyls.compiler.control.io.CharSequenceReaderSource;
+import net.prominic.groovyls.compiler.control.io.ContentHash;
+import net.prominic.groovyls.compiler.control.io.FileReaderSourceWithURI;
 import net.prominic.groovyls.util.FileContentsTracker;
 
 public class CompilationUnitFactory implements ICompilationUnitFactory {
 	private static final String FILE_EXTENSION_GROOVY = ".groovy";
 
 	private GroovyLSCompilationUnit compilationUnit;
+	private boolean declarationsOnlyForClosedFiles = true;
+	private Set<URI> promotedURIs = new HashSet<>();
+	private Set<URI> unchangedURIs = new HashSet<>();
+	private Set<URI> recompiledURIs = new HashSet<>();
+	private List<Path> buildOutputDirectories = new ArrayList<>();
+	private boolean detectBuildOutputDirectories = false;
+	private BuildOutputs buildOutputs = null;
+	private Set<URI> builtURIs = new HashSet<>();
+	private boolean workspaceUnitEnabled = false;
+	private GroovyLSCompilationUnit workspaceUnit;
+	private boolean releaseParsers = true;
 
 	public CompilationUnitFactory() {
 	}
 
+	public boolean isDeclarationsOnlyForClosedFiles() {
+		return declarationsOnlyForClosedFiles;
+	}
+
+	/**
+	 * If true, files that aren't open are compiled with their declarations
+	 * only, until they are promoted.
+	 */
+	public void setDeclarationsOnlyForClosedFiles(boolean declarationsOnlyForClosedFiles) {
+		this.declarationsOnlyForClosedFiles = declarationsOnlyForClosedFiles;
+	}
+
+	public List<Path> getBuildOutputDirectories() {
+		return buildOutputDirectories;
+	}
+
+	/**
+	 * Files that aren't open are compiled with their declarations only, if
+	 * their classes in these directories are up to date, and classes without
+	 * sources are loaded from these directories. Relative paths are resolved
+	 * against the workspace root.
+	 */
+	public void setBuildOutputDirectories(List<Path> buildOutputDirectories) {
+		this.buildOutputDirectories = buildOutputDirectories;
+	}
+
+	public boolean isDetectBuildOutputDirectories() {
+		return detectBuildOutputDirectories;
+	}
+
+	/**
+	 * If true, the directories where Gradle and Maven put compiled classes
+	 * are used as build output directories, if they exist in the workspace.
+	 */
+	public void setDetectBuildOutputDirectories(boolean detectBuildOutputDirectories) {
+		this.detectBuildOutputDirectories = detectBuildOutputDirectories;
+	}
+
+	public boolean isWorkspaceUnitEnabled() {
+		return workspaceUnitEnabled;
+	}
+
+	/**
+	 * If true, every file in the workspace is compiled from disk into a
+	 * separate workspace unit, which is compiled again only when files
+	 * change on disk. The compilation unit returned by create() contains
+	 * only the open files, and it resolves other classes from the workspace
+	 * unit, so compiling a change takes time proportional to the number of
+	 * open files, and not the size of the workspace.
+	 */
+	public void setWorkspaceUnitEnabled(boolean workspaceUnitEnabled) {
+		this.workspaceUnitEnabled = workspaceUnitEnabled;
+		invalidateCompilationUnit();
+	}
+
+	public boolean isReleaseParsers() {
+		return releaseParsers;
+	}
+
+	/**
+	 * If true, the parser of each source is released after the source is
+	 * converted to an AST, instead of being kept for as long as the source.
+	 */
+	public void setReleaseParsers(boolean releaseParsers) {
+		this.releaseParsers = releaseParsers;
+	}
+
+	public GroovyLSCompilationUnit getWorkspaceCompilationUnit() {
+		return workspaceUnit;
+	}
+
+	public void promoteToFullCompile(Collection<URI> uris) {
+		promotedURIs.addAll(uris);
+	}
+
+	public void demoteToDeclarationsOnly(Collection<URI> uris) {
+		promotedURIs.removeAll(uris);
+	}
+
+	public void recompile(Collection<URI> uris) {
+		recompiledURIs.addAll(uris);
+	}
+
+	public Set<URI> getUnchangedURIs() {
+		return unchangedURIs;
+	}
+
 	public void invalidateCompilationUnit() {
 		compilationUnit = null;
+		workspaceUnit = null;
 	}
 
 	public GroovyLSCompilationUnit create(Path workspaceRoot, FileContentsTracker fileContentsTracker) {
-		CompilerConfiguration config = new CompilerConfiguration();
+		try {
+			if (workspaceUnitEnabled && workspaceRoot != null) {
+				return createWithWorkspaceUnit(workspaceRoot, fileContentsTracker);
+			}
+			return createWithoutWorkspaceUnit(workspaceRoot, fileContentsTracker);
+		} finally {
+			recompiledURIs.clear();
+		}
+	}
+
+	protected GroovyLSCompilationUnit createWithoutWorkspaceUnit(Path workspaceRoot,
+			FileContentsTracker fileContentsTracker) {
+		workspaceUnit = null;
 
 		Set<URI> changedUris = fileContentsTracker.getChangedURIs();
+		unchangedURIs = new HashSet<>();
 		if (compilationUnit == null) {
-			compilationUnit = new GroovyLSCompilationUnit(config);
+			buildOutputs = createBuildOutputs(workspaceRoot);
+			compilationUnit = new GroovyLSCompilationUnit(createConfiguration(), releaseParsers);
 			//we don't care about changed URIs if there's no compilation unit yet
 			changedUris = null;
 		} else {
-			final Set<URI> urisToRemove = changedUris;
 			List<SourceUnit> sourcesToRemove = new ArrayList<>();
-			compilationUnit.iterator().forEachRemaining(sourceUnit -> {
-				URI uri = sourceUnit.getSource().getURI();
-				if (urisToRemove.contains(uri)) {
-					sourcesToRemove.add(sourceUnit);
+			Set<URI> urisToAdd = new HashSet<>();
+			for (URI uri : changedUris) {
+				SourceUnit sourceUnit = compilationUnit.getSourceUnit(uri);
+				if (sourceUnit == null) {
+					urisToAdd.add(uri);
+					continue;
 				}
-			});
+				byte[] contentHash = recompiledURIs.contains(uri) ? null
+						: getReusableContentHash(uri, fileContentsTracker);
+				if (ContentHash.equals(contentHash, compilationUnit.getContentHash(uri))) {
+					//the same contents were already compiled
+					unchangedURIs.add(uri);
+					continue;
+				}
+				if (ContentHash.equals(contentHash, compilationUnit.getPreviousContentHash(uri))
+						&& compilationUnit.restorePreviousSource(uri)) {
+					//the change was undone
+					continue;
+				}
+				sourcesToRemove.add(sourceUnit);
+				urisToAdd.add(uri);
+			}
+			changedUris = urisToAdd;
 			//if an URI has changed, we remove it from the compilation unit so
 			//that a new version can be built from the updated source file
 			compilationUnit.removeSources(sourcesToRemove);
@@ -88,28 +223,184 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 		return compilationUnit;
 	}
 
+	protected GroovyLSCompilationUnit createWithWorkspaceUnit(Path workspaceRoot,
+			FileContentsTracker fileContentsTracker) {
+		Set<URI> changedUris = fileContentsTracker.getChangedURIs();
+		unchangedURIs = new HashSet<>();
+		if (compilationUnit == null || workspaceUnit == null) {
+			buildOutputs = createBuildOutputs(workspaceRoot);
+			workspaceUnit = new GroovyLSCompilationUnit(createConfiguration(), releaseParsers);
+			compilationUnit = new GroovyLSCompilationUnit(createConfiguration(), releaseParsers);
+			compilationUnit.setClassNodeResolver(new WorkspaceClassNodeResolver(workspaceUnit));
+			//open files are also added to the workspace unit with their
+			//contents on disk, so that the workspace unit is complete
+			walkGroovyFiles(workspaceRoot, filePath -> {
+				addClosedFileToCompilationUnit(filePath, workspaceUnit);
+			});
+			fileContentsTracker.getOpenURIs().forEach(uri -> {
+				addOpenFileToCompilationUnit(uri, fileContentsTracker.getContents(uri), compilationUnit);
+			});
+			return compilationUnit;
+		}
+
+		//the workspace unit only changes when files change on disk
+		List<SourceUnit> workspaceSourcesToRemove = new ArrayList<>();
+		List<Path> workspaceFilesToAdd = new ArrayList<>();
+		Set<URI> unchangedOnDiskURIs = new HashSet<>();
+		for (URI uri : changedUris) {
+			Path filePath = Paths.get(uri);
+			if (!filePath.toString().endsWith(FILE_EXTENSION_GROOVY)
+					|| !filePath.normalize().startsWith(workspaceRoot.normalize()) || !filePath.toUri().equals(uri)) {
+				continue;
+			}
+			SourceUnit sourceUnit = workspaceUnit.getSourceUnit(uri);
+			if (sourceUnit != null) {
+				if (!recompiledURIs.contains(uri) && ContentHash.equals(
+						getWorkspaceContentHash(uri, fileContentsTracker), workspaceUnit.getContentHash(uri))) {
+					unchangedOnDiskURIs.add(uri);
+					continue;
+				}
+				workspaceSourcesToRemove.add(sourceUnit);
+			}
+			if (filePath.toFile().isFile()) {
+				workspaceFilesToAdd.add(filePath);
+			}
+		}
+		workspaceUnit.removeSources(workspaceSourcesToRemove);
+		workspaceFilesToAdd.forEach(filePath -> addClosedFileToCompilationUnit(filePath, workspaceUnit));
+
+		//the compilation unit only contains the open files
+		List<SourceUnit> sourcesToRemove = new ArrayList<>();
+		List<URI> urisToAdd = new ArrayList<>();
+		for (URI uri : changedUris) {
+			boolean isOpen = fileContentsTracker.isOpen(uri);
+			SourceUnit sourceUnit = compilationUnit.getSourceUnit(uri);
+			if (sourceUnit == null) {
+				if (isOpen) {
+					urisToAdd.add(uri);
+				} else if (unchangedOnDiskURIs.contains(uri)) {
+					unchangedURIs.add(uri);
+				}
+				continue;
+			}
+			if (isOpen) {
+				byte[] contentHash = recompiledURIs.contains(uri) ? null
+						: ContentHash.of(fileContentsTracker.getContents(uri));
+				if (ContentHash.equals(contentHash, compilationUnit.getContentHash(uri))) {
+					unchangedURIs.add(uri);
+					continue;
+				}
+				if (ContentHash.equals(contentHash, compilationUnit.getPreviousContentHash(uri))
+						&& compilationUnit.restorePreviousSource(uri)) {
+					continue;
+				}
+				urisToAdd.add(uri);
+			}
+			//a file that was closed is only in the workspace unit
+			sourcesToRemove.add(sourceUnit);
+		}
+		compilationUnit.removeSources(sourcesToRemove);
+		sourcesToRemove.forEach(sourceUnit -> {
+			URI uri = sourceUnit.getSource().getURI();
+			if (!fileContentsTracker.isOpen(uri)) {
+				compilationUnit.clearPreviousSource(uri);
+			}
+		});
+		urisToAdd.forEach(uri -> {
+			addOpenFileToCompilationUnit(uri, fileContentsTracker.getContents(uri), compilationUnit);
+		});
+		return compilationUnit;
+	}
+
+	/**
+	 * Returns the hash of a file's contents on disk, if the workspace unit's
+	 * source for the file could be kept. Otherwise, returns null.
+	 */
+	private byte[] getWorkspaceContentHash(URI uri, FileContentsTracker fileContentsTracker) {
+		if (workspaceUnit.isDeclarationsOnly(uri) && !isDeclarationsOnly(uri)) {
+			return null;
+		}
+		String contents = fileContentsTracker.getContentsOnDisk(uri);
+		if (contents == null) {
+			return null;
+		}
+		return ContentHash.of(contents);
+	}
+
+	private CompilerConfiguration createConfiguration() {
+		CompilerConfiguration config = new CompilerConfiguration();
+		if (buildOutputs != null && !buildOutputs.isEmpty()) {
+			//classes that aren't compiled are resolved lazily from the class
+			//files
+			config.setClasspathList(
+					buildOutputs.getDirectories().stream().map(Path::toString).collect(Collectors.toList()));
+		}
+		return config;
+	}
+
+	protected BuildOutputs createBuildOutputs(Path workspaceRoot) {
+		List<Path> directories = new ArrayList<>();
+		for (Path directory : buildOutputDirectories) {
+			//relative paths are relative to the workspace
+			if (!directory.isAbsolute() && workspaceRoot != null) {
+				directory = workspaceRoot.resolve(directory);
+			}
+			directories.add(directory);
+		}
+		if (detectBuildOutputDirectories && workspaceRoot != null) {
+			directories.addAll(BuildOutputs.detect(workspaceRoot).getDirectories());
+		}
+		return new BuildOutputs(directories);
+	}
+
+	/**
+	 * Returns the hash of a changed file's contents, if a source unit with
+	 * the same contents could be kept in place of adding it again. Otherwise,
+	 * returns null.
+	 */
+	protected byte[] getReusableContentHash(URI uri, FileContentsTracker fileContentsTracker) {
+		boolean isOpen = fileContentsTracker.isOpen(uri);
+		//a source that was compiled fully may be kept whether the file is
+		//open or closed, so closing and reopening a file that wasn't
+		//modified doesn't need a compile
+		if (compilationUnit.isDeclarationsOnly(uri) && (isOpen || !isDeclarationsOnly(uri))) {
+			return null;
+		}
+		String contents = fileContentsTracker.getContents(uri);
+		if (contents == null) {
+			return null;
+		}
+		return ContentHash.of(contents);
+	}
+
+	private boolean isDeclarationsOnly(URI uri) {
+		return (declarationsOnlyForClosedFiles || builtURIs.contains(uri)) && !promotedURIs.contains(uri);
+	}
+
 	protected void addDirectoryToCompilationUnit(Path dirPath, GroovyLSCompilationUnit compilationUnit,
 			FileContentsTracker fileContentsTracker, Set<URI> changedUris) {
-		try {
-			if (Files.exists(dirPath)) {
-				Files.walk(dirPath).forEach((filePath) -> {
-					if (!filePath.toString().endsWith(FILE_EXTENSION_GROOVY)) {
-						return;
-					}
-					URI fileURI = filePath.toUri();
-					if (!fileContentsTracker.isOpen(fileURI)) {
-						File file = filePath.toFile();
-						if (file.isFile()) {
-							if (changedUris == null || changedUris.contains(fileURI)) {
-								compilationUnit.addSource(file);
-							}
-						}
-					}
-				});
+		if (changedUris != null) {
+			//only the changed files need to be added, so there's no need to
+			//walk the whole directory
+			for (URI uri : changedUris) {
+				if (fileContentsTracker.isOpen(uri)) {
+					continue;
+				}
+				Path filePath = Paths.get(uri);
+				if (!filePath.toString().endsWith(FILE_EXTENSION_GROOVY)
+						|| !filePath.normalize().startsWith(dirPath.normalize()) || !filePath.toUri().equals(uri)) {
+					continue;
+				}
+				if (filePath.toFile().isFile()) {
+					addClosedFileToCompilationUnit(filePath, compilationUnit);
+				}
 			}
-
-		} catch (IOException e) {
-			System.err.println("Failed to walk directory for source files: " + dirPath);
+		} else {
+			walkGroovyFiles(dirPath, filePath -> {
+				if (!fileContentsTracker.isOpen(filePath.toUri())) {
+					addClosedFileToCompilationUnit(filePath, compilationUnit);
+				}
+			});
 		}
 		fileContentsTracker.getOpenURIs().forEach(uri -> {
 			Path openPath = Paths.get(uri);
@@ -124,10 +415,48 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 		});
 	}
 
+	private void walkGroovyFiles(Path dirPath, Consumer<Path> consumer) {
+		try {
+			if (Files.exists(dirPath)) {
+				Files.walk(dirPath).forEach((filePath) -> {
+					if (!filePath.toString().endsWith(FILE_EXTENSION_GROOVY)) {
+						return;
+					}
+					if (filePath.toFile().isFile()) {
+						consumer.accept(filePath);
+					}
+				});
+			}
+
+		} catch (IOException e) {
+			System.err.println("Failed to walk directory for source files: " + dirPath);
+		}
+	}
+
+	protected void addClosedFileToCompilationUnit(Path filePath, GroovyLSCompilationUnit compilationUnit) {
+		URI uri = filePath.toUri();
+		if (buildOutputs != null && buildOutputs.isUpToDate(filePath)) {
+			//the file hasn't been modified since the last build, so its
+			//declarations are enough until it is promoted
+			builtURIs.add(uri);
+		} else {
+			builtURIs.remove(uri);
+		}
+		SourceUnit sourceUnit = new SourceUnit(filePath.toString(),
+				new FileReaderSourceWithURI(filePath.toFile(), uri, compilationUnit.getConfiguration()),
+				compilationUnit.getConfiguration(), compilationUnit.getClassLoader(),
+				compilationUnit.getErrorCollector());
+		if (isDeclarationsOnly(uri)) {
+			compilationUnit.addDeclarationsOnlySource(sourceUnit);
+		} else {
+			compilationUnit.addSource(sourceUnit);
+		}
+	}
+
 	protected void addOpenFileToCompilationUnit(URI uri, String contents, GroovyLSCompilationUnit compilationUnit) {
 		Path filePath = Paths.get(uri);
 		SourceUnit sourceUnit = new SourceUnit(filePath.toString(),
-				new StringReaderSourceWithURI(contents, uri, compilationUnit.getConfiguration()),
+				new CharSequenceReaderSource(contents, uri, compilationUnit.getConfiguration()),
 				compilationUnit.getConfiguration(), compilationUnit.getClassLoader(),
 				compilationUnit.getErrorCollector());
 		compilationUnit.addSource(sourceUnit);
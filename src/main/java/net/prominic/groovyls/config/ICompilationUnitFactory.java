@@ -19,7 +19,10 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.config;
 
+import java.net.URI;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Set;
 
 import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
 import net.prominic.groovyls.util.FileContentsTracker;
@@ -31,8 +34,41 @@ public interface ICompilationUnitFactory {
 	 */
 	public void invalidateCompilationUnit();
 
+	/**
+	 * If some files are compiled with their declarations only, they will be
+	 * compiled fully the next time that they are added to a compilation unit.
+	 */
+	public void promoteToFullCompile(Collection<URI> uris);
+
+	/**
+	 * Reverses promoteToFullCompile(), so that files that are added to a
+	 * compilation unit again are compiled with their declarations only.
+	 */
+	public void demoteToDeclarationsOnly(Collection<URI> uris);
+
+	/**
+	 * The next time that these files are changed, they will be compiled
+	 * again even if their contents are the same as the version that was
+	 * already compiled, because the classes that they use have changed.
+	 */
+	public void recompile(Collection<URI> uris);
+
 	/**
 	 * Returns a compilation unit.
 	 */
 	public GroovyLSCompilationUnit create(Path workspaceRoot, FileContentsTracker fileContentsTracker);
+
+	/**
+	 * Returns the changed URIs that the last call to create() kept as they
+	 * were, because their contents are the same as the version that was
+	 * already compiled.
+	 */
+	public Set<URI> getUnchangedURIs();
+
+	/**
+	 * Returns the compilation unit that contains the files of the workspace,
+	 * as they are on disk, if the compilation unit returned by create()
+	 * resolves classes from it. Otherwise, returns null.
+	 */
+	public GroovyLSCompilationUnit getWorkspaceCompilationUnit();
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.codehaus.groovy.control.Phases;
+
+/**
+ * Records the wall and CPU time that the compiler spends on each file in
+ * each phase. The timings from the most recent compiles are kept in a rolling
+ * window, and the slowest files in each phase may be queried.
+ */
+public class CompileProfiler {
+	private static final int DEFAULT_WINDOW_SIZE = 50;
+	private static final int DEFAULT_SLOWEST_COUNT = 10;
+
+	public static class FileTiming {
+		private String sourceName;
+		private int phase;
+		private long wallNanos;
+		private long cpuNanos;
+
+		public FileTiming(String sourceName, int phase) {
+			this.sourceName = sourceName;
+			this.phase = phase;
+		}
+
+		public String getSourceName() {
+			return sourceName;
+		}
+
+		public int getPhase() {
+			return phase;
+		}
+
+		public long getWallNanos() {
+			return wallNanos;
+		}
+
+		public long getCpuNanos() {
+			return cpuNanos;
+		}
+
+		public Map<String, Object> toMap() {
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("file", sourceName);
+			result.put("wallMs", wallNanos / 1_000_000.0);
+			result.put("cpuMs", cpuNanos / 1_000_000.0);
+			return result;
+		}
+	}
+
+	private ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+	private boolean cpuTimeSupported;
+	private int windowSize;
+	private int slowestCount;
+	private Map<String, FileTiming> currentCompile = new HashMap<>();
+	private Deque<List<FileTiming>> window = new ArrayDeque<>();
+
+	public CompileProfiler() {
+		this(DEFAULT_WINDOW_SIZE, DEFAULT_SLOWEST_COUNT);
+	}
+
+	/**
+	 * @param windowSize   the number of compiles to remember
+	 * @param slowestCount the number of files to report for each phase
+	 */
+	public CompileProfiler(int windowSize, int slowestCount) {
+		this.windowSize = windowSize;
+		this.slowestCount = slowestCount;
+		cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported();
+		if (cpuTimeSupported && !threadMXBean.isThreadCpuTimeEnabled()) {
+			try {
+				threadMXBean.setThreadCpuTimeEnabled(true);
+			} catch (UnsupportedOperationException e) {
+				cpuTimeSupported = false;
+			}
+		}
+	}
+
+	/**
+	 * Returns the CPU time of the current thread, to be passed to record()
+	 * later. Returns 0 if measuring CPU time is not supported.
+	 */
+	public long currentThreadCpuTime() {
+		if (!cpuTimeSupported) {
+			return 0L;
+		}
+		return threadMXBean.getCurrentThreadCpuTime();
+	}
+
+	/**
+	 * Adds time spent on a file in a phase of the current compile. A phase
+	 * may run several operations on the same file, so the times are added
+	 * together.
+	 */
+	public synchronized void record(int phase, String sourceName, long wallNanos, long cpuNanos) {
+		FileTiming timing = currentCompile.computeIfAbsent(phase + ":" + sourceName,
+				key -> new FileTiming(sourceName, phase));
+		timing.wallNanos += wallNanos;
+		timing.cpuNanos += cpuNanos;
+	}
+
+	/**
+	 * Moves the timings of the current compile into the rolling window.
+	 */
+	public synchronized void compileCompleted() {
+		if (currentCompile.isEmpty()) {
+			return;
+		}
+		window.addLast(new ArrayList<>(currentCompile.values()));
+		currentCompile.clear();
+		while (window.size() > windowSize) {
+			window.removeFirst();
+		}
+	}
+
+	/**
+	 * Returns the slowest timings of the most recent compile, by wall time,
+	 * across all phases. Each timing is for one file in one phase, so a slow
+	 * file may appear more than once.
+	 */
+	public synchronized List<FileTiming> getSlowestInLastCompile() {
+		if (window.isEmpty()) {
+			return new ArrayList<>();
+		}
+		List<FileTiming> result = new ArrayList<>(window.getLast());
+		result.sort((t1, t2) -> Long.compare(t2.wallNanos, t1.wallNanos));
+		if (result.size() > slowestCount) {
+			result = new ArrayList<>(result.subList(0, slowestCount));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the slowest files in each phase over the rolling window. If a
+	 * file appears in more than one compile, its slowest time is used.
+	 */
+	public synchronized Map<Integer, List<FileTiming>> getSlowestByPhase() {
+		Map<Integer, Map<String, FileTiming>> slowestByPhase = new TreeMap<>();
+		for (List<FileTiming> timings : window) {
+			for (FileTiming timing : timings) {
+				Map<String, FileTiming> phaseTimings = slowestByPhase.computeIfAbsent(timing.phase,
+						key -> new HashMap<>());
+				FileTiming existing = phaseTimings.get(timing.sourceName);
+				if (existing == null || existing.wallNanos < timing.wallNanos) {
+					phaseTimings.put(timing.sourceName, timing);
+				}
+			}
+		}
+		Map<Integer, List<FileTiming>> result = new TreeMap<>();
+		for (Map.Entry<Integer, Map<String, FileTiming>> entry : slowestByPhase.entrySet()) {
+			List<FileTiming> timings = new ArrayList<>(entry.getValue().values());
+			timings.sort((t1, t2) -> Long.compare(t2.wallNanos, t1.wallNanos));
+			if (timings.size() > slowestCount) {
+				timings = new ArrayList<>(timings.subList(0, slowestCount));
+			}
+			result.put(entry.getKey(), timings);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the slowest files in each phase in a form that may be
+	 * serialized to JSON.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		for (Map.Entry<Integer, List<FileTiming>> entry : getSlowestByPhase().entrySet()) {
+			List<Map<String, Object>> timings = new ArrayList<>();
+			for (FileTiming timing : entry.getValue()) {
+				timings.add(timing.toMap());
+			}
+			result.put(Phases.getDescription(entry.getKey()), timings);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,100 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A histogram of durations with fixed, roughly exponential buckets. Uses a
+ * constant amount of memory, no matter how many values are recorded.
+ * Percentiles are estimated from the bucket boundaries.
+ */
+public class LatencyHistogram {
+	private static final double[] BUCKET_BOUNDS_MS = { 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0, 25.0, 50.0, 100.0,
+			250.0, 500.0, 1000.0, 2500.0, 5000.0, 10000.0 };
+
+	private long[] bucketCounts = new long[BUCKET_BOUNDS_MS.length + 1];
+	private long count = 0;
+	private double totalMs = 0.0;
+	private double maxMs = 0.0;
+
+	public synchronized void record(double durationMs) {
+		int bucket = 0;
+		while (bucket < BUCKET_BOUNDS_MS.length && durationMs > BUCKET_BOUNDS_MS[bucket]) {
+			bucket++;
+		}
+		bucketCounts[bucket]++;
+		count++;
+		totalMs += durationMs;
+		maxMs = Math.max(maxMs, durationMs);
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	public synchronized double getMaxMs() {
+		return maxMs;
+	}
+
+	public synchronized double getMeanMs() {
+		if (count == 0) {
+			return 0.0;
+		}
+		return totalMs / count;
+	}
+
+	/**
+	 * Returns the upper bound of the bucket that contains the requested
+	 * percentile, or the largest recorded value, if it is smaller.
+	 */
+	public synchronized double getPercentileMs(double percentile) {
+		if (count == 0) {
+			return 0.0;
+		}
+		long rank = (long) Math.ceil(percentile / 100.0 * count);
+		long cumulative = 0;
+		for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+			cumulative += bucketCounts[i];
+			if (cumulative >= rank) {
+				return Math.min(BUCKET_BOUNDS_MS[i], maxMs);
+			}
+		}
+		return maxMs;
+	}
+
+	public synchronized Map<String, Object> toMap() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("count", count);
+		result.put("meanMs", getMeanMs());
+		result.put("p50Ms", getPercentileMs(50));
+		result.put("p95Ms", getPercentileMs(95));
+		result.put("p99Ms", getPercentileMs(99));
+		result.put("maxMs", maxMs);
+		Map<String, Long> buckets = new LinkedHashMap<>();
+		for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+			buckets.put("<=" + BUCKET_BOUNDS_MS[i], bucketCounts[i]);
+		}
+		buckets.put(">" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1], bucketCounts[BUCKET_BOUNDS_MS.length]);
+		result.put("buckets", buckets);
+		return result;
+	}
+}
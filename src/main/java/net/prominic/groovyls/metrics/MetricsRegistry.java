@@ -0,0 +1,155 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+import org.codehaus.groovy.control.Phases;
+
+/**
+ * Collects runtime metrics for the language server. It may be updated and
+ * read from different threads.
+ */
+public class MetricsRegistry {
+	private Map<String, LatencyHistogram> requests = new TreeMap<>();
+	private LatencyHistogram compiles = new LatencyHistogram();
+	private Map<Integer, LatencyHistogram> compilePhases = new TreeMap<>();
+	private Map<String, Long> gauges = new TreeMap<>();
+	private int lastSourcesCompiled = 0;
+	private long totalSourcesCompiled = 0;
+	private int inFlightRequests = 0;
+	private long totalChangesCompiled = 0;
+	private IntConsumer changesCompiledListener;
+
+	/**
+	 * Counts a request that is being handled. lsp4j dispatches messages one
+	 * at a time, so the number of requests in flight doesn't include the
+	 * messages waiting to be dispatched.
+	 */
+	public synchronized void requestStarted() {
+		inFlightRequests++;
+	}
+
+	/**
+	 * Records the duration of a request or notification, from the time
+	 * returned by System.nanoTime() when it started.
+	 */
+	public void requestCompleted(String method, long startTime) {
+		LatencyHistogram histogram = null;
+		synchronized (this) {
+			inFlightRequests--;
+			histogram = requests.computeIfAbsent(method, key -> new LatencyHistogram());
+		}
+		histogram.record(toMs(System.nanoTime() - startTime));
+	}
+
+	public void recordCompile(long durationNanos, int sourcesCompiled) {
+		compiles.record(toMs(durationNanos));
+		synchronized (this) {
+			lastSourcesCompiled = sourcesCompiled;
+			totalSourcesCompiled += sourcesCompiled;
+		}
+	}
+
+	/**
+	 * Records that changes to documents were compiled, and that the
+	 * diagnostics of the changed documents were published. The changes are
+	 * counted by didChange notification.
+	 */
+	public void recordChangesCompiled(int changeCount) {
+		IntConsumer listener = null;
+		synchronized (this) {
+			totalChangesCompiled += changeCount;
+			listener = changesCompiledListener;
+		}
+		if (listener != null) {
+			listener.accept(changeCount);
+		}
+	}
+
+	/**
+	 * Sets a listener that is called with the number of changes each time
+	 * that changes are compiled. It may be called from a background thread.
+	 */
+	public synchronized void setChangesCompiledListener(IntConsumer listener) {
+		changesCompiledListener = listener;
+	}
+
+	public void recordCompilePhase(int phase, long durationNanos) {
+		LatencyHistogram histogram = null;
+		synchronized (this) {
+			histogram = compilePhases.computeIfAbsent(phase, key -> new LatencyHistogram());
+		}
+		histogram.record(toMs(durationNanos));
+	}
+
+	/**
+	 * Sets a value that is reported as-is, like the number of AST nodes or
+	 * the number of files waiting to be compiled.
+	 */
+	public synchronized void setGauge(String name, long value) {
+		gauges.put(name, value);
+	}
+
+	/**
+	 * Returns all metrics in a form that may be serialized to JSON.
+	 */
+	public synchronized Map<String, Object> snapshot() {
+		Map<String, Object> result = new LinkedHashMap<>();
+
+		Map<String, Object> requestsResult = new LinkedHashMap<>();
+		for (Map.Entry<String, LatencyHistogram> entry : requests.entrySet()) {
+			requestsResult.put(entry.getKey(), entry.getValue().toMap());
+		}
+		result.put("requests", requestsResult);
+
+		Map<String, Object> compileResult = compiles.toMap();
+		Map<String, Object> phasesResult = new LinkedHashMap<>();
+		for (Map.Entry<Integer, LatencyHistogram> entry : compilePhases.entrySet()) {
+			phasesResult.put(Phases.getDescription(entry.getKey()), entry.getValue().toMap());
+		}
+		compileResult.put("phases", phasesResult);
+		compileResult.put("lastSourcesCompiled", lastSourcesCompiled);
+		compileResult.put("totalSourcesCompiled", totalSourcesCompiled);
+		compileResult.put("totalChangesCompiled", totalChangesCompiled);
+		result.put("compile", compileResult);
+
+		Map<String, Object> gaugesResult = new LinkedHashMap<>(gauges);
+		gaugesResult.put("inFlightRequests", inFlightRequests);
+		result.put("gauges", gaugesResult);
+
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		Map<String, Object> heapResult = new LinkedHashMap<>();
+		heapResult.put("used", heap.getUsed());
+		heapResult.put("committed", heap.getCommitted());
+		heapResult.put("max", heap.getMax());
+		result.put("heap", heapResult);
+		return result;
+	}
+
+	private static double toMs(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+}
@@ -21,10 +21,7 @@ package net.prominic.groovyls.providers;
 
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -47,26 +44,64 @@ import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
+import net.prominic.groovyls.compiler.util.MemberTable;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 
 public class CompletionProvider {
 	private ASTNodeVisitor ast;
+	private List<CompletionItem> candidates;
+	private String memberNamePrefix = "";
 
 	public CompletionProvider(ASTNodeVisitor ast) {
 		this.ast = ast;
 	}
 
+	/**
+	 * Returns every completion item for the member that was completed by the
+	 * last call to provideCompletion(), ignoring the part of the name that
+	 * was already typed. Returns null if there was nothing to complete.
+	 */
+	public List<CompletionItem> getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * Returns the part of the member name that was already typed before the
+	 * position passed to the last call to provideCompletion().
+	 */
+	public String getMemberNamePrefix() {
+		return memberNamePrefix;
+	}
+
+	/**
+	 * Returns the items with labels that start with the prefix.
+	 */
+	public static List<CompletionItem> filterCandidates(List<CompletionItem> candidates, String prefix) {
+		if (prefix.length() == 0) {
+			return new ArrayList<>(candidates);
+		}
+		return candidates.stream().filter(item -> item.getLabel().startsWith(prefix)).collect(Collectors.toList());
+	}
+
+	/**
+	 * The list is incomplete if nothing could be completed, which is usually
+	 * caused by a syntax error. Otherwise, it contains every member that
+	 * starts with the typed prefix, and the client may filter it further
+	 * without asking again.
+	 */
 	public CompletableFuture<Either<List<CompletionItem>, CompletionList>> provideCompletion(
 			TextDocumentIdentifier textDocument, Position position, CompletionContext context) {
+		candidates = null;
+		memberNamePrefix = "";
 		if (ast == null) {
 			//this shouldn't happen, but let's avoid an exception if something
 			//goes terribly wrong.
-			return CompletableFuture.completedFuture(Either.forLeft(Collections.emptyList()));
+			return CompletableFuture.completedFuture(Either.forRight(new CompletionList(true, new ArrayList<>())));
 		}
 		URI uri = URI.create(textDocument.getUri());
 		ASTNode offsetNode = ast.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
 		if (offsetNode == null) {
-			return CompletableFuture.completedFuture(Either.forLeft(Collections.emptyList()));
+			return CompletableFuture.completedFuture(Either.forRight(new CompletionList(true, new ArrayList<>())));
 		}
 		ASTNode parentNode = ast.getParent(offsetNode);
 
@@ -82,97 +117,84 @@ public class CompletionProvider {
 			populateItemsFromMethodCallExpression((MethodCallExpression) parentNode, position, items);
 		} else if (offsetNode instanceof VariableExpression) {
 			populateItemsFromVariableExpression((VariableExpression) offsetNode, position, items);
+		} else {
+			return CompletableFuture.completedFuture(Either.forRight(new CompletionList(true, items)));
 		}
 
-		return CompletableFuture.completedFuture(Either.forLeft(items));
+		candidates = items;
+		List<CompletionItem> filteredItems = filterCandidates(items, memberNamePrefix);
+		return CompletableFuture.completedFuture(Either.forRight(new CompletionList(false, filteredItems)));
 	}
 
 	private void populateItemsFromPropertyExpression(PropertyExpression propExpr, Position position,
 			List<CompletionItem> items) {
 		Range propertyRange = GroovyLanguageServerUtils.astNodeToRange(propExpr.getProperty());
-		String memberName = getMemberName(propExpr.getPropertyAsString(), propertyRange, position);
-		populateItemsFromExpression(propExpr.getObjectExpression(), memberName, items);
+		memberNamePrefix = getMemberName(propExpr.getPropertyAsString(), propertyRange, position);
+		populateItemsFromExpression(propExpr.getObjectExpression(), items);
 	}
 
 	private void populateItemsFromMethodCallExpression(MethodCallExpression methodCallExpr, Position position,
 			List<CompletionItem> items) {
 		Range methodRange = GroovyLanguageServerUtils.astNodeToRange(methodCallExpr.getMethod());
-		String memberName = getMemberName(methodCallExpr.getMethodAsString(), methodRange, position);
-		populateItemsFromExpression(methodCallExpr.getObjectExpression(), memberName, items);
+		memberNamePrefix = getMemberName(methodCallExpr.getMethodAsString(), methodRange, position);
+		populateItemsFromExpression(methodCallExpr.getObjectExpression(), items);
 	}
 
 	private void populateItemsFromVariableExpression(VariableExpression varExpr, Position position,
 			List<CompletionItem> items) {
 		Range varRange = GroovyLanguageServerUtils.astNodeToRange(varExpr);
-		String memberName = getMemberName(varExpr.getName(), varRange, position);
+		memberNamePrefix = getMemberName(varExpr.getName(), varRange, position);
 		ClassNode enclosingClass = GroovyASTUtils.getEnclosingClass(varExpr, ast);
-		populateItemsFromPropertiesAndFields(enclosingClass.getProperties(), enclosingClass.getFields(), memberName,
-				items);
-		populateItemsFromMethods(enclosingClass.getMethods(), memberName, items);
+		if (enclosingClass == null) {
+			return;
+		}
+		//instance members can't be used in a static method
+		MethodNode enclosingMethod = ast.getEnclosingMethod(varExpr);
+		MemberTable.Scope scope = (enclosingMethod != null && enclosingMethod.isStatic()) ? MemberTable.Scope.STATIC
+				: MemberTable.Scope.ALL;
+		MemberTable memberTable = GroovyASTUtils.getMemberTable(enclosingClass, ast);
+		populateItemsFromMemberTable(memberTable, scope, items);
 	}
 
-	private void populateItemsFromPropertiesAndFields(List<PropertyNode> properties, List<FieldNode> fields,
-			String memberNamePrefix, List<CompletionItem> items) {
-		Set<String> foundNames = new HashSet<>();
-		List<CompletionItem> propItems = properties.stream().filter(property -> {
-			String name = property.getName();
-			//sometimes, a property and a field will have the same name
-			if (name.startsWith(memberNamePrefix) && !foundNames.contains(name)) {
-				foundNames.add(name);
-				return true;
-			}
-			return false;
-		}).map(property -> {
+	private void populateItemsFromMemberTable(MemberTable memberTable, MemberTable.Scope scope,
+			List<CompletionItem> items) {
+		//the member table never contains a field with the same name as a
+		//property, so there are no duplicates
+		for (PropertyNode property : memberTable.getProperties(scope, "")) {
 			CompletionItem item = new CompletionItem();
 			item.setLabel(property.getName());
 			item.setKind(GroovyLanguageServerUtils.astNodeToCompletionItemKind(property));
-			return item;
-		}).collect(Collectors.toList());
-		items.addAll(propItems);
-		List<CompletionItem> fieldItems = fields.stream().filter(field -> {
-			String name = field.getName();
-			//sometimes, a property and a field will have the same name
-			if (name.startsWith(memberNamePrefix) && !foundNames.contains(name)) {
-				foundNames.add(name);
-				return true;
-			}
-			return false;
-		}).map(field -> {
+			items.add(item);
+		}
+		for (FieldNode field : memberTable.getFields(scope, "")) {
 			CompletionItem item = new CompletionItem();
 			item.setLabel(field.getName());
 			item.setKind(GroovyLanguageServerUtils.astNodeToCompletionItemKind(field));
-			return item;
-		}).collect(Collectors.toList());
-		items.addAll(fieldItems);
-	}
-
-	private void populateItemsFromMethods(List<MethodNode> methods, String memberNamePrefix,
-			List<CompletionItem> items) {
-		Set<String> foundMethods = new HashSet<>();
-		List<CompletionItem> methodItems = methods.stream().filter(method -> {
+			items.add(item);
+		}
+		String previousMethodName = null;
+		for (MethodNode method : memberTable.getMethods(scope, "")) {
 			String methodName = method.getName();
-			//overloads can cause duplicates
-			if (methodName.startsWith(memberNamePrefix) && !foundMethods.contains(methodName)) {
-				foundMethods.add(methodName);
-				return true;
+			//overloads are sorted next to each other
+			if (methodName.equals(previousMethodName)) {
+				continue;
 			}
-			return false;
-		}).map(method -> {
+			previousMethodName = methodName;
 			CompletionItem item = new CompletionItem();
-			item.setLabel(method.getName());
+			item.setLabel(methodName);
 			item.setKind(GroovyLanguageServerUtils.astNodeToCompletionItemKind(method));
-			return item;
-		}).collect(Collectors.toList());
-		items.addAll(methodItems);
+			items.add(item);
+		}
 	}
 
-	private void populateItemsFromExpression(Expression leftSide, String memberNamePrefix, List<CompletionItem> items) {
-		List<PropertyNode> properties = GroovyASTUtils.getPropertiesForLeftSideOfPropertyExpression(leftSide, ast);
-		List<FieldNode> fields = GroovyASTUtils.getFieldsForLeftSideOfPropertyExpression(leftSide, ast);
-		populateItemsFromPropertiesAndFields(properties, fields, memberNamePrefix, items);
-
-		List<MethodNode> methods = GroovyASTUtils.getMethodsForLeftSideOfPropertyExpression(leftSide, ast);
-		populateItemsFromMethods(methods, memberNamePrefix, items);
+	private void populateItemsFromExpression(Expression leftSide, List<CompletionItem> items) {
+		ClassNode classNode = GroovyASTUtils.getTypeOfNode(leftSide, ast);
+		if (classNode == null) {
+			return;
+		}
+		MemberTable memberTable = GroovyASTUtils.getMemberTable(classNode, ast);
+		MemberTable.Scope scope = GroovyASTUtils.getScopeForLeftSideOfPropertyExpression(leftSide);
+		populateItemsFromMemberTable(memberTable, scope, items);
 	}
 
 	private String getMemberName(String memberName, Range range, Position position) {
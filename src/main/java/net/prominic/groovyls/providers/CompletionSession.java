@@ -0,0 +1,91 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.providers;
+
+import java.net.URI;
+import java.util.List;
+
+import org.eclipse.lsp4j.CompletionItem;
+
+/**
+ * Remembers the unfiltered completion candidates for the member name that is
+ * being typed, so that the following keystrokes in the same name may filter
+ * them again without compiling or resolving anything. The session is valid
+ * only while the text before the start of the name and the text after the
+ * cursor stay the same.
+ */
+public class CompletionSession {
+	private URI uri;
+	private String text;
+	private int memberStart;
+	private int cursor;
+	private List<CompletionItem> candidates;
+
+	public CompletionSession(URI uri, String text, int memberStart, int cursor, List<CompletionItem> candidates) {
+		this.uri = uri;
+		this.text = text;
+		this.memberStart = memberStart;
+		this.cursor = cursor;
+		this.candidates = candidates;
+	}
+
+	public URI getURI() {
+		return uri;
+	}
+
+	public List<CompletionItem> getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * Returns the offset where the member name starts, if the cursor is
+	 * still inside the same member name, or -1 if the session can't be used.
+	 */
+	public int getMemberStart(URI otherURI, String otherText, int otherCursor) {
+		if (!uri.equals(otherURI) || otherCursor < memberStart) {
+			return -1;
+		}
+		int tailLength = text.length() - cursor;
+		if (otherText.length() - otherCursor != tailLength) {
+			return -1;
+		}
+		if (!otherText.regionMatches(0, text, 0, memberStart)
+				|| !otherText.regionMatches(otherCursor, text, cursor, tailLength)) {
+			return -1;
+		}
+		for (int i = memberStart; i < otherCursor; i++) {
+			if (!Character.isJavaIdentifierPart(otherText.charAt(i))) {
+				return -1;
+			}
+		}
+		return memberStart;
+	}
+
+	/**
+	 * Returns the offset where the identifier that ends at the cursor starts.
+	 */
+	public static int findMemberStart(String text, int cursor) {
+		int start = cursor;
+		while (start > 0 && Character.isJavaIdentifierPart(text.charAt(start - 1))) {
+			start--;
+		}
+		return start;
+	}
+}
@@ -0,0 +1,158 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.providers;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.eclipse.lsp4j.Position;
+
+/**
+ * Caches the results of read-only providers, like hover and document
+ * symbols, for a specific version of a document and position. The least
+ * recently used results are evicted when the cache is full. Each result
+ * records the files that it depends on, and it is dropped when any of those
+ * files are compiled again.
+ */
+public class ProviderResultCache {
+	private static final int DEFAULT_CAPACITY = 500;
+
+	public static class Key {
+		private String kind;
+		private URI uri;
+		private int version;
+		private int line;
+		private int character;
+
+		/**
+		 * @param position may be null for requests that aren't specific to a
+		 *                 position in the document
+		 */
+		public Key(String kind, URI uri, int version, Position position) {
+			this.kind = kind;
+			this.uri = uri;
+			this.version = version;
+			this.line = (position != null) ? position.getLine() : -1;
+			this.character = (position != null) ? position.getCharacter() : -1;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return version == other.version && line == other.line && character == other.character
+					&& kind.equals(other.kind) && uri.equals(other.uri);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(kind, uri, version, line, character);
+		}
+	}
+
+	private static class Entry {
+		public Object value;
+		public Set<URI> dependencies;
+	}
+
+	private Map<Key, Entry> entries;
+	private long hits = 0;
+	private long misses = 0;
+
+	public ProviderResultCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public ProviderResultCache(int capacity) {
+		entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	public boolean containsKey(Key key) {
+		boolean result = entries.containsKey(key);
+		if (result) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the cached result, which may be null.
+	 */
+	public Object get(Key key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		return entry.value;
+	}
+
+	public void put(Key key, Object value, Set<URI> dependencies) {
+		Entry entry = new Entry();
+		entry.value = value;
+		entry.dependencies = dependencies;
+		entries.put(key, entry);
+	}
+
+	/**
+	 * Drops any results that depend on the specified files.
+	 */
+	public void invalidate(Collection<URI> uris) {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (!Collections.disjoint(entry.dependencies, uris)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+}
@@ -22,14 +22,14 @@ package net.prominic.groovyls.providers;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
 import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.PropertyNode;
 import org.codehaus.groovy.ast.expr.ConstantExpression;
@@ -47,10 +47,10 @@ import org.eclipse.lsp4j.WorkspaceEdit;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+import net.prominic.groovyls.compiler.util.DeclarationNameFinder;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 import net.prominic.groovyls.util.FileContentsTracker;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
-import net.prominic.lsp.utils.Ranges;
 
 public class RenameProvider {
 	private ASTNodeVisitor ast;
@@ -82,24 +82,31 @@ public class RenameProvider {
 		}
 
 		List<ASTNode> references = GroovyASTUtils.getReferences(offsetNode, ast);
+		//group the references by file, so that each file is read at most once
+		Map<URI, List<ASTNode>> referencesByURI = new LinkedHashMap<>();
 		references.forEach(node -> {
 			URI uri = ast.getURI(node);
 			if (uri == null) {
 				uri = documentURI;
 			}
+			referencesByURI.computeIfAbsent(uri, key -> new ArrayList<>()).add(node);
+		});
 
-			String contents = getPartialNodeText(uri, node);
-			Range range = GroovyLanguageServerUtils.astNodeToRange(node);
-			Position start = range.getStart();
-			Position end = range.getEnd();
-			end.setLine(start.getLine());
-			end.setCharacter(start.getCharacter() + contents.length());
-
-			TextEdit textEdit = null;
-			if (node instanceof ClassNode) {
-				ClassNode classNode = (ClassNode) node;
-				textEdit = createTextEditToRenameClassNode(classNode, newName, contents, range);
-				if (textEdit != null && ast.getParent(classNode) == null) {
+		referencesByURI.forEach((uri, nodes) -> {
+			DeclarationNameFinder nameFinder = new DeclarationNameFinder(() -> files.getContents(uri));
+			List<TextEdit> textEdits = new ArrayList<>();
+			for (ASTNode node : nodes) {
+				Range range = null;
+				if (node instanceof ConstantExpression || node instanceof VariableExpression) {
+					range = GroovyLanguageServerUtils.astNodeToRange(node);
+				} else if (node instanceof ClassNode || node instanceof MethodNode || node instanceof PropertyNode
+						|| node instanceof FieldNode) {
+					range = copyRange(ast.getNameRange(node, nameFinder));
+				}
+				if (range == null) {
+					continue;
+				}
+				if (node instanceof ClassNode && isNamedForFile((ClassNode) node, uri)) {
 					String newURI = uri.toString();
 					int slashIndex = newURI.lastIndexOf("/");
 					int dotIndex = newURI.lastIndexOf(".");
@@ -110,26 +117,14 @@ public class RenameProvider {
 					renameFile.setNewUri(newURI);
 					documentChanges.add(Either.forRight(renameFile));
 				}
-			} else if (node instanceof MethodNode) {
-				MethodNode methodNode = (MethodNode) node;
-				textEdit = createTextEditToRenameMethodNode(methodNode, newName, contents, range);
-			} else if (node instanceof PropertyNode) {
-				PropertyNode propNode = (PropertyNode) node;
-				textEdit = createTextEditToRenamePropertyNode(propNode, newName, contents, range);
-			} else if (node instanceof ConstantExpression || node instanceof VariableExpression) {
-				textEdit = new TextEdit();
-				textEdit.setNewText(newName);
+				TextEdit textEdit = new TextEdit();
 				textEdit.setRange(range);
+				textEdit.setNewText(newName);
+				textEdits.add(textEdit);
 			}
-			if (textEdit == null) {
-				return;
-			}
-
-			if (!textEditChanges.containsKey(uri.toString())) {
-				textEditChanges.put(uri.toString(), new ArrayList<>());
+			if (!textEdits.isEmpty()) {
+				textEditChanges.put(uri.toString(), textEdits);
 			}
-			List<TextEdit> textEdits = textEditChanges.get(uri.toString());
-			textEdits.add(textEdit);
 		});
 
 		for (String uri : textEditChanges.keySet()) {
@@ -143,81 +138,33 @@ public class RenameProvider {
 		return CompletableFuture.completedFuture(workspaceEdit);
 	}
 
-	private String getPartialNodeText(URI uri, ASTNode node) {
-		String contents = files.getContents(uri);
-		Range range = GroovyLanguageServerUtils.astNodeToRange(node);
-		return Ranges.getSubstring(contents, range, 1);
-	}
-
-	private TextEdit createTextEditToRenameClassNode(ClassNode classNode, String newName, String text, Range range) {
-		// the AST doesn't give us access to the name location, so we
-		// need to find it manually
-		String className = classNode.getNameWithoutPackage();
-		int dollarIndex = className.indexOf('$');
-		if (dollarIndex != 01) {
-			// it's an inner class, so remove the outer name prefix
-			className = className.substring(dollarIndex + 1);
+	/**
+	 * The file is renamed with the class only if the class is a top-level
+	 * class with the same name as the file.
+	 */
+	private boolean isNamedForFile(ClassNode classNode, URI uri) {
+		if (classNode.getOuterClass() != null) {
+			return false;
 		}
-
-		Pattern classPattern = Pattern.compile("(class\\s+)" + className + "\\b");
-		Matcher classMatcher = classPattern.matcher(text);
-		if (!classMatcher.find()) {
-			// couldn't find the name!
-			return null;
+		String path = uri.getPath();
+		if (path == null) {
+			return false;
 		}
-		String prefix = classMatcher.group(1);
-
-		Position start = range.getStart();
-		Position end = range.getEnd();
-		end.setCharacter(start.getCharacter() + classMatcher.end());
-		start.setCharacter(start.getCharacter() + prefix.length() + classMatcher.start());
-
-		TextEdit textEdit = new TextEdit();
-		textEdit.setRange(range);
-		textEdit.setNewText(newName);
-		return textEdit;
-	}
-
-	private TextEdit createTextEditToRenameMethodNode(MethodNode methodNode, String newName, String text, Range range) {
-		// the AST doesn't give us access to the name location, so we
-		// need to find it manually
-		Pattern methodPattern = Pattern.compile("\\b" + methodNode.getName() + "\\b(?=\\s*\\()");
-		Matcher methodMatcher = methodPattern.matcher(text);
-		if (!methodMatcher.find()) {
-			// couldn't find the name!
-			return null;
+		String fileName = path.substring(path.lastIndexOf('/') + 1);
+		int dotIndex = fileName.lastIndexOf('.');
+		if (dotIndex != -1) {
+			fileName = fileName.substring(0, dotIndex);
 		}
-
-		Position start = range.getStart();
-		Position end = range.getEnd();
-		end.setCharacter(start.getCharacter() + methodMatcher.end());
-		start.setCharacter(start.getCharacter() + methodMatcher.start());
-
-		TextEdit textEdit = new TextEdit();
-		textEdit.setRange(range);
-		textEdit.setNewText(newName);
-		return textEdit;
+		return fileName.equals(classNode.getNameWithoutPackage());
 	}
 
-	private TextEdit createTextEditToRenamePropertyNode(PropertyNode propNode, String newName, String text,
-			Range range) {
-		// the AST doesn't give us access to the name location, so we
-		// need to find it manually
-		Pattern propPattern = Pattern.compile("\\b" + propNode.getName() + "\\b");
-		Matcher propMatcher = propPattern.matcher(text);
-		if (!propMatcher.find()) {
-			// couldn't find the name!
+	private Range copyRange(Range range) {
+		if (range == null) {
 			return null;
 		}
-
 		Position start = range.getStart();
 		Position end = range.getEnd();
-		end.setCharacter(start.getCharacter() + propMatcher.end());
-		start.setCharacter(start.getCharacter() + propMatcher.start());
-
-		TextEdit textEdit = new TextEdit();
-		textEdit.setRange(range);
-		textEdit.setNewText(newName);
-		return textEdit;
+		return new Range(new Position(start.getLine(), start.getCharacter()),
+				new Position(end.getLine(), end.getCharacter()));
 	}
-}
\ No newline at end of file
+}
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.Parameter;
 import org.codehaus.groovy.ast.expr.ArgumentListExpression;
@@ -45,13 +46,47 @@ import net.prominic.groovyls.util.GroovyNodeToStringUtils;
 
 public class SignatureHelpProvider {
 	private ASTNodeVisitor ast;
+	private List<MethodNode> methods;
+	private List<SignatureInformation> signatures;
+	private List<ClassNode> argumentTypes;
+	private int activeParameter = -1;
 
 	public SignatureHelpProvider(ASTNodeVisitor ast) {
 		this.ast = ast;
 	}
 
+	/**
+	 * Returns the overloads of the method call found by the last call to
+	 * provideSignatureHelp(), or null if no method call was found.
+	 */
+	public List<MethodNode> getMethods() {
+		return methods;
+	}
+
+	/**
+	 * Returns the signatures of the overloads, in the same order.
+	 */
+	public List<SignatureInformation> getSignatures() {
+		return signatures;
+	}
+
+	/**
+	 * Returns the types of the arguments passed to the method call.
+	 */
+	public List<ClassNode> getArgumentTypes() {
+		return argumentTypes;
+	}
+
+	public int getActiveParameter() {
+		return activeParameter;
+	}
+
 	public CompletableFuture<SignatureHelp> provideSignatureHelp(TextDocumentIdentifier textDocument,
 			Position position) {
+		methods = null;
+		signatures = null;
+		argumentTypes = null;
+		activeParameter = -1;
 		if (ast == null) {
 			//this shouldn't happen, but let's avoid an exception if something
 			//goes terribly wrong.
@@ -103,6 +138,11 @@ public class SignatureHelpProvider {
 		MethodNode bestMethod = GroovyASTUtils.getMethodFromCallExpression(methodCall, ast, activeParamIndex);
 		int activeSignature = methods.indexOf(bestMethod);
 
+		this.methods = methods;
+		this.signatures = sigInfos;
+		this.argumentTypes = GroovyASTUtils.getArgumentTypes(methodCall);
+		this.activeParameter = activeParamIndex;
+
 		return CompletableFuture.completedFuture(new SignatureHelp(sigInfos, activeSignature, activeParamIndex));
 	}
 
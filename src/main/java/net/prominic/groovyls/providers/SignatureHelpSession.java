@@ -0,0 +1,203 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.providers;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.eclipse.lsp4j.SignatureHelp;
+import org.eclipse.lsp4j.SignatureInformation;
+
+import net.prominic.groovyls.compiler.util.GroovyASTUtils;
+
+/**
+ * Remembers the overloads and signatures of the method call whose arguments
+ * are being typed. While the text up to the opening parenthesis and the text
+ * after the cursor stay the same, the following keystrokes only need to find
+ * the active parameter and the best overload again, without compiling or
+ * resolving the call.
+ */
+public class SignatureHelpSession {
+	private URI uri;
+	private String text;
+	private int openParen;
+	private int cursor;
+	private List<MethodNode> methods;
+	private List<SignatureInformation> signatures;
+	private List<String> arguments;
+	private List<ClassNode> argumentTypes;
+
+	private SignatureHelpSession(URI uri, String text, int openParen, int cursor, List<String> arguments,
+			List<MethodNode> methods, List<SignatureInformation> signatures, List<ClassNode> argumentTypes) {
+		this.uri = uri;
+		this.text = text;
+		this.openParen = openParen;
+		this.cursor = cursor;
+		this.arguments = arguments;
+		this.methods = methods;
+		this.signatures = signatures;
+		this.argumentTypes = argumentTypes;
+	}
+
+	/**
+	 * Creates a session for the method call that contains the cursor, or
+	 * returns null if the text doesn't agree with the active parameter that
+	 * was found by the compiler.
+	 */
+	public static SignatureHelpSession create(URI uri, String text, int cursor, SignatureHelpProvider provider) {
+		if (provider.getMethods() == null || provider.getArgumentTypes() == null) {
+			return null;
+		}
+		int openParen = findOpenParen(text, cursor);
+		if (openParen == -1) {
+			return null;
+		}
+		List<String> arguments = splitArguments(text, openParen, cursor);
+		if (arguments == null || arguments.size() - 1 != provider.getActiveParameter()) {
+			return null;
+		}
+		return new SignatureHelpSession(uri, text, openParen, cursor, arguments, provider.getMethods(),
+				provider.getSignatures(), provider.getArgumentTypes());
+	}
+
+	public URI getURI() {
+		return uri;
+	}
+
+	/**
+	 * Returns the signature help for the same method call after more of its
+	 * arguments have been typed, or null if the session can't be used.
+	 */
+	public SignatureHelp getSignatureHelp(URI otherURI, String otherText, int otherCursor) {
+		if (!uri.equals(otherURI) || otherCursor <= openParen) {
+			return null;
+		}
+		int tailLength = text.length() - cursor;
+		if (otherText.length() - otherCursor != tailLength) {
+			return null;
+		}
+		if (!otherText.regionMatches(0, text, 0, openParen + 1)
+				|| !otherText.regionMatches(otherCursor, text, cursor, tailLength)) {
+			return null;
+		}
+		List<String> otherArguments = splitArguments(otherText, openParen, otherCursor);
+		if (otherArguments == null) {
+			return null;
+		}
+		int activeParameter = otherArguments.size() - 1;
+		MethodNode bestMethod = GroovyASTUtils.findBestMethod(methods, getArgumentTypes(otherArguments),
+				activeParameter);
+		return new SignatureHelp(signatures, methods.indexOf(bestMethod), activeParameter);
+	}
+
+	private List<ClassNode> getArgumentTypes(List<String> otherArguments) {
+		int oldActive = arguments.size() - 1;
+		int newActive = otherArguments.size() - 1;
+		List<ClassNode> result = new ArrayList<>();
+		//arguments before the active one keep their types only if their text
+		//didn't change
+		for (int i = 0; i < newActive; i++) {
+			result.add(getArgumentType(i, i < oldActive && otherArguments.get(i).equals(arguments.get(i))));
+		}
+		//the active argument may continue after the cursor, so it counts if
+		//there was already an argument there, or if something was typed
+		String activeArgument = otherArguments.get(newActive);
+		boolean activeUnchanged = activeArgument.equals(arguments.get(oldActive));
+		if (oldActive < argumentTypes.size() || activeArgument.trim().length() > 0) {
+			result.add(getArgumentType(oldActive, activeUnchanged && newActive == oldActive));
+		}
+		//the arguments after the cursor didn't change
+		for (int i = oldActive + 1; i < argumentTypes.size(); i++) {
+			result.add(argumentTypes.get(i));
+		}
+		return result;
+	}
+
+	private ClassNode getArgumentType(int index, boolean unchanged) {
+		if (!unchanged || index >= argumentTypes.size()) {
+			return null;
+		}
+		return argumentTypes.get(index);
+	}
+
+	/**
+	 * Returns the offset of the opening parenthesis that hasn't been closed
+	 * before the cursor, or -1 if there isn't one.
+	 */
+	private static int findOpenParen(String text, int cursor) {
+		int depth = 0;
+		for (int i = cursor - 1; i >= 0; i--) {
+			char c = text.charAt(i);
+			if (c == ')' || c == ']' || c == '}') {
+				depth++;
+			} else if (c == '(' || c == '[' || c == '{') {
+				if (depth == 0) {
+					return (c == '(') ? i : -1;
+				}
+				depth--;
+			} else if (c == ';') {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Splits the text between the opening parenthesis and the cursor into
+	 * arguments, ignoring commas in nested brackets and strings. The last
+	 * argument is the one that contains the cursor. Returns null if the
+	 * method call is closed before the cursor.
+	 */
+	private static List<String> splitArguments(String text, int openParen, int cursor) {
+		List<String> result = new ArrayList<>();
+		int depth = 0;
+		char quote = 0;
+		int start = openParen + 1;
+		for (int i = start; i < cursor; i++) {
+			char c = text.charAt(i);
+			if (quote != 0) {
+				if (c == '\\') {
+					i++;
+				} else if (c == quote) {
+					quote = 0;
+				}
+				continue;
+			}
+			if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '(' || c == '[' || c == '{') {
+				depth++;
+			} else if (c == ')' || c == ']' || c == '}') {
+				if (depth == 0) {
+					return null;
+				}
+				depth--;
+			} else if (c == ',' && depth == 0) {
+				result.add(text.substring(start, i).trim());
+				start = i + 1;
+			}
+		}
+		result.add(text.substring(start, cursor).trim());
+		return result;
+	}
+}
@@ -0,0 +1,97 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.trace;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads and writes JSON-RPC messages using the base protocol framing of the
+ * language server protocol (a Content-Length header, followed by the body).
+ */
+public class LSPMessageStreams {
+	private static final String HEADER_CONTENT_LENGTH = "Content-Length:";
+
+	/**
+	 * Reads the body of the next message. Returns null if the end of the
+	 * stream is reached before a complete message could be read.
+	 */
+	public static String readMessage(InputStream in) throws IOException {
+		int contentLength = -1;
+		while (true) {
+			String header = readHeaderLine(in);
+			if (header == null) {
+				return null;
+			}
+			if (header.isEmpty()) {
+				if (contentLength == -1) {
+					//keep looking for a header that we understand
+					continue;
+				}
+				break;
+			}
+			if (header.regionMatches(true, 0, HEADER_CONTENT_LENGTH, 0, HEADER_CONTENT_LENGTH.length())) {
+				try {
+					contentLength = Integer.parseInt(header.substring(HEADER_CONTENT_LENGTH.length()).trim());
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid header: " + header);
+				}
+			}
+		}
+		byte[] body = new byte[contentLength];
+		int offset = 0;
+		while (offset < contentLength) {
+			int count = in.read(body, offset, contentLength - offset);
+			if (count == -1) {
+				return null;
+			}
+			offset += count;
+		}
+		return new String(body, StandardCharsets.UTF_8);
+	}
+
+	public static void writeMessage(OutputStream out, String message) throws IOException {
+		byte[] body = message.getBytes(StandardCharsets.UTF_8);
+		String header = HEADER_CONTENT_LENGTH + " " + body.length + "\r\n\r\n";
+		out.write(header.getBytes(StandardCharsets.US_ASCII));
+		out.write(body);
+		out.flush();
+	}
+
+	private static String readHeaderLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int next = -1;
+		while ((next = in.read()) != -1) {
+			if (next == '\n') {
+				break;
+			}
+			if (next != '\r') {
+				line.write(next);
+			}
+		}
+		if (next == -1) {
+			return null;
+		}
+		return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+	}
+}
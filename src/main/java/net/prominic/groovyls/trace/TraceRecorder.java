@@ -0,0 +1,125 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.trace;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Copies the messages sent by the client to the language server, and appends
+ * each one to a trace file with the time that it was received. A trace may be
+ * replayed later with {@link TraceReplayer}.
+ * 
+ * The trace file contains one JSON object per line, with the number of
+ * milliseconds since recording started in the "time" field and the original
+ * JSON-RPC message in the "message" field.
+ */
+public class TraceRecorder implements Runnable {
+	public static final String FIELD_TIME = "time";
+	public static final String FIELD_MESSAGE = "message";
+
+	private static final int PIPE_SIZE = 1 << 16;
+
+	/**
+	 * Starts recording the messages from the specified input stream. Returns
+	 * a new input stream that the language server should read from instead.
+	 */
+	public static InputStream record(InputStream in, Path traceFile) throws IOException {
+		Writer writer = Files.newBufferedWriter(traceFile, StandardCharsets.UTF_8);
+		PipedInputStream serverInput = new PipedInputStream(PIPE_SIZE);
+		PipedOutputStream pipe = new PipedOutputStream(serverInput);
+		Thread thread = new Thread(new TraceRecorder(in, pipe, writer), "groovyls-trace-recorder");
+		thread.setDaemon(true);
+		thread.start();
+		return serverInput;
+	}
+
+	private InputStream in;
+	private PipedOutputStream out;
+	private Writer writer;
+	private JsonParser parser = new JsonParser();
+	private long startTime = System.nanoTime();
+
+	private TraceRecorder(InputStream in, PipedOutputStream out, Writer writer) {
+		this.in = in;
+		this.out = out;
+		this.writer = writer;
+	}
+
+	@Override
+	public void run() {
+		try {
+			String message = null;
+			while ((message = LSPMessageStreams.readMessage(in)) != null) {
+				long time = (System.nanoTime() - startTime) / 1_000_000L;
+				writeTraceEntry(time, message);
+				LSPMessageStreams.writeMessage(out, message);
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to record language server trace.");
+			e.printStackTrace(System.err);
+		} finally {
+			try {
+				writer.close();
+			} catch (IOException e) {
+			}
+			try {
+				out.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private void writeTraceEntry(long time, String message) {
+		JsonElement parsedMessage = null;
+		try {
+			parsedMessage = parser.parse(message);
+		} catch (RuntimeException e) {
+			//the server will report the error when it reads the message, so
+			//there's no reason to record it
+			return;
+		}
+		JsonObject entry = new JsonObject();
+		entry.add(FIELD_TIME, new JsonPrimitive(time));
+		entry.add(FIELD_MESSAGE, parsedMessage);
+		try {
+			//the entry is serialized without line breaks, so there's
+			//always exactly one entry per line
+			writer.write(entry.toString());
+			writer.write('\n');
+			//flush each entry so that a trace is still usable if the
+			//process is killed
+			writer.flush();
+		} catch (IOException e) {
+			System.err.println("Failed to write language server trace entry.");
+		}
+	}
+}
@@ -0,0 +1,274 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.trace;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.services.LanguageClient;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import net.prominic.groovyls.GroovyLanguageServer;
+import net.prominic.groovyls.GroovyServices;
+
+/**
+ * Replays a trace recorded by {@link TraceRecorder} against a new language
+ * server running in the same process, and reports the latency of each request
+ * method and the time from each didChange notification until the compile that
+ * includes it has completed and published its diagnostics. Changes that were
+ * never compiled are counted next to that time.
+ * 
+ * Usage: TraceReplayer &lt;trace file&gt; [--realtime] [--timeout
+ * &lt;seconds&gt;]
+ * 
+ * By default, messages are sent as fast as possible, and the replayer waits
+ * for the response to each request before sending the next message. With
+ * --realtime, messages are sent at the same pace that they were recorded.
+ */
+public class TraceReplayer {
+	private static final String METHOD_DID_CHANGE = "textDocument/didChange";
+	private static final String METHOD_EXIT = "exit";
+	private static final String LABEL_TIME_TO_COMPILE = "didChange -> compiled";
+	private static final int PIPE_SIZE = 1 << 20;
+
+	public static void main(String[] args) throws Exception {
+		Path traceFile = null;
+		boolean realtime = false;
+		long timeoutSeconds = 60;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("--realtime")) {
+				realtime = true;
+			} else if (arg.equals("--timeout") && i + 1 < args.length) {
+				i++;
+				timeoutSeconds = Long.parseLong(args[i]);
+			} else {
+				traceFile = Paths.get(arg);
+			}
+		}
+		if (traceFile == null) {
+			System.err.println("Usage: TraceReplayer <trace file> [--realtime] [--timeout <seconds>]");
+			System.exit(1);
+			return;
+		}
+		TraceReplayer replayer = new TraceReplayer(realtime, timeoutSeconds);
+		replayer.replay(readTrace(traceFile));
+		replayer.printReport();
+		System.exit(0);
+	}
+
+	public static List<JsonObject> readTrace(Path traceFile) throws IOException {
+		List<JsonObject> entries = new ArrayList<>();
+		JsonParser parser = new JsonParser();
+		try (BufferedReader reader = Files.newBufferedReader(traceFile, StandardCharsets.UTF_8)) {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				entries.add(parser.parse(line).getAsJsonObject());
+			}
+		}
+		return entries;
+	}
+
+	private boolean realtime;
+	private long timeoutSeconds;
+	private Map<String, List<Double>> latenciesByMethod = new TreeMap<>();
+	private Map<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+	private Deque<Long> pendingChanges = new ConcurrentLinkedDeque<>();
+
+	private static class PendingRequest {
+		public String method;
+		public long startTime;
+		public CompletableFuture<Void> response = new CompletableFuture<>();
+	}
+
+	public TraceReplayer(boolean realtime, long timeoutSeconds) {
+		this.realtime = realtime;
+		this.timeoutSeconds = timeoutSeconds;
+	}
+
+	public Map<String, List<Double>> getLatenciesByMethod() {
+		return latenciesByMethod;
+	}
+
+	public void replay(List<JsonObject> entries) throws IOException, InterruptedException {
+		PipedInputStream serverInput = new PipedInputStream(PIPE_SIZE);
+		PipedOutputStream clientOutput = new PipedOutputStream(serverInput);
+		PipedInputStream clientInput = new PipedInputStream(PIPE_SIZE);
+		PipedOutputStream serverOutput = new PipedOutputStream(clientInput);
+
+		GroovyLanguageServer server = new GroovyLanguageServer();
+		//the server runs in the same process, so it can report each compile
+		//of pending changes directly
+		GroovyServices services = (GroovyServices) server.getTextDocumentService();
+		services.getMetrics().setChangesCompiledListener(this::changesCompiled);
+		Launcher<LanguageClient> launcher = Launcher.createLauncher(server, LanguageClient.class, serverInput,
+				serverOutput);
+		server.connect(launcher.getRemoteProxy());
+		launcher.startListening();
+
+		Thread responseReader = new Thread(() -> {
+			readServerMessages(clientInput);
+		}, "groovyls-trace-replayer");
+		responseReader.setDaemon(true);
+		responseReader.start();
+
+		long replayStartTime = System.nanoTime();
+		long firstEntryTime = entries.isEmpty() ? 0 : entries.get(0).get(TraceRecorder.FIELD_TIME).getAsLong();
+		for (JsonObject entry : entries) {
+			JsonObject message = entry.getAsJsonObject(TraceRecorder.FIELD_MESSAGE);
+			String method = message.has("method") ? message.get("method").getAsString() : null;
+			if (METHOD_EXIT.equals(method)) {
+				//the server would exit the whole process
+				continue;
+			}
+			if (realtime) {
+				long entryTime = entry.get(TraceRecorder.FIELD_TIME).getAsLong() - firstEntryTime;
+				long elapsed = (System.nanoTime() - replayStartTime) / 1_000_000L;
+				if (entryTime > elapsed) {
+					Thread.sleep(entryTime - elapsed);
+				}
+			}
+			PendingRequest request = null;
+			if (method != null && message.has("id")) {
+				request = new PendingRequest();
+				request.method = method;
+				request.startTime = System.nanoTime();
+				pendingRequests.put(message.get("id").toString(), request);
+			} else if (METHOD_DID_CHANGE.equals(method)) {
+				pendingChanges.add(System.nanoTime());
+			}
+			LSPMessageStreams.writeMessage(clientOutput, message.toString());
+			if (request != null && !realtime) {
+				waitForResponse(request);
+			}
+		}
+		for (PendingRequest request : new ArrayList<>(pendingRequests.values())) {
+			waitForResponse(request);
+		}
+		//the last changes are compiled after the compile delay
+		long waitEndTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+		while (!pendingChanges.isEmpty() && System.nanoTime() < waitEndTime) {
+			Thread.sleep(10);
+		}
+	}
+
+	public void printReport() {
+		System.out.println(String.format("%-40s %8s %10s %10s %10s %10s", "method", "count", "p50 (ms)", "p95 (ms)",
+				"p99 (ms)", "max (ms)"));
+		for (Map.Entry<String, List<Double>> entry : latenciesByMethod.entrySet()) {
+			List<Double> latencies = new ArrayList<>(entry.getValue());
+			Collections.sort(latencies);
+			System.out.println(String.format("%-40s %8d %10.2f %10.2f %10.2f %10.2f", entry.getKey(),
+					latencies.size(), percentile(latencies, 50), percentile(latencies, 95),
+					percentile(latencies, 99), latencies.get(latencies.size() - 1)));
+		}
+		System.out.println(String.format("%-40s %8d", "didChange never compiled", pendingChanges.size()));
+	}
+
+	/**
+	 * Uses the nearest-rank method. The list must be sorted.
+	 */
+	public static double percentile(List<Double> sortedValues, int percentile) {
+		if (sortedValues.isEmpty()) {
+			return 0.0;
+		}
+		int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.size());
+		return sortedValues.get(Math.max(rank, 1) - 1);
+	}
+
+	private void waitForResponse(PendingRequest request) throws InterruptedException {
+		try {
+			request.response.get(timeoutSeconds, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			System.err.println("Timed out waiting for response to request: " + request.method);
+		} catch (Exception e) {
+			// the response was an error, but we still measured the latency
+		}
+	}
+
+	/**
+	 * The server handles notifications in order, so the changes that were
+	 * compiled are the oldest ones that haven't been compiled yet.
+	 */
+	private void changesCompiled(int changeCount) {
+		for (int i = 0; i < changeCount; i++) {
+			Long changeTime = pendingChanges.poll();
+			if (changeTime == null) {
+				return;
+			}
+			addLatency(LABEL_TIME_TO_COMPILE, changeTime);
+		}
+	}
+
+	private synchronized void addLatency(String label, long startTime) {
+		double latency = (System.nanoTime() - startTime) / 1_000_000.0;
+		latenciesByMethod.computeIfAbsent(label, key -> new ArrayList<>()).add(latency);
+	}
+
+	private void readServerMessages(PipedInputStream clientInput) {
+		JsonParser parser = new JsonParser();
+		try {
+			String body = null;
+			while ((body = LSPMessageStreams.readMessage(clientInput)) != null) {
+				JsonObject message = parser.parse(body).getAsJsonObject();
+				if (message.has("method")) {
+					//notifications from the server aren't measured
+					continue;
+				}
+				JsonElement id = message.get("id");
+				if (id == null) {
+					continue;
+				}
+				PendingRequest request = pendingRequests.remove(id.toString());
+				if (request == null) {
+					continue;
+				}
+				addLatency(request.method, request.startTime);
+				request.response.complete(null);
+			}
+		} catch (IOException e) {
+			//the server has stopped
+		}
+	}
+}
@@ -19,13 +19,20 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.util;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -38,8 +45,19 @@ import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import net.prominic.lsp.utils.Positions;
 
 public class FileContentsTracker {
+	private static final int DEFAULT_CLOSED_FILE_CACHE_SIZE = 200;
+	private static final long MEMORY_MAPPED_FILE_SIZE = 1024 * 1024;
+
+	private static class ClosedFileContents {
+		public long lastModified;
+		public long size;
+		public String contents;
+	}
 
 	private Map<URI, String> openFiles = new HashMap<>();
+	private Map<Path, ClosedFileContents> closedFiles = createClosedFileCache(DEFAULT_CLOSED_FILE_CACHE_SIZE);
+	private Charset charset = StandardCharsets.UTF_8;
+	private Map<URI, Integer> versions = new HashMap<>();
 	private Set<URI> changedFiles = new HashSet<>();
 
 	public Set<URI> getOpenURIs() {
@@ -58,13 +76,38 @@ public class FileContentsTracker {
 		changedFiles.add(uri);
 	}
 
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * Sets the charset used to decode files that are not open.
+	 */
+	public void setCharset(Charset charset) {
+		this.charset = charset;
+		closedFiles.clear();
+	}
+
 	public boolean isOpen(URI uri) {
 		return openFiles.containsKey(uri);
 	}
 
+	/**
+	 * Returns the version of an open file, as reported by the client, or -1
+	 * if the file is not open.
+	 */
+	public int getVersion(URI uri) {
+		Integer version = versions.get(uri);
+		if (version == null) {
+			return -1;
+		}
+		return version;
+	}
+
 	public void didOpen(DidOpenTextDocumentParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
 		openFiles.put(uri, params.getTextDocument().getText());
+		versions.put(uri, params.getTextDocument().getVersion());
 		changedFiles.add(uri);
 	}
 
@@ -77,46 +120,100 @@ public class FileContentsTracker {
 			openFiles.put(uri, change.getText());
 		} else {
 			int offset = Positions.getOffset(oldText, change.getRange().getStart());
-			StringBuilder builder = new StringBuilder();
-			builder.append(oldText.substring(0, offset));
-			builder.append(change.getText());
-			builder.append(oldText.substring(offset + change.getRangeLength()));
+			int endOffset = offset + change.getRangeLength();
+			String newText = change.getText();
+			//splice without copying the unchanged parts into substrings first
+			StringBuilder builder = new StringBuilder(oldText.length() - change.getRangeLength() + newText.length());
+			builder.append(oldText, 0, offset);
+			builder.append(newText);
+			builder.append(oldText, endOffset, oldText.length());
 			openFiles.put(uri, builder.toString());
 		}
+		Integer version = params.getTextDocument().getVersion();
+		if (version == null) {
+			version = getVersion(uri) + 1;
+		}
+		versions.put(uri, version);
 		changedFiles.add(uri);
 	}
 
 	public void didClose(DidCloseTextDocumentParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
 		openFiles.remove(uri);
+		versions.remove(uri);
 		changedFiles.add(uri);
 	}
 
 	public String getContents(URI uri) {
 		if (!openFiles.containsKey(uri)) {
-			BufferedReader reader = null;
-			try {
-				reader = Files.newBufferedReader(Paths.get(uri));
-				StringBuilder builder = new StringBuilder();
-				int next = -1;
-				while ((next = reader.read()) != -1) {
-					builder.append((char) next);
-				}
-				return builder.toString();
-			} catch (IOException e) {
-				return null;
-			} finally {
-				if (reader != null) {
-					try {
-						reader.close();
-					} catch (IOException e) {
-					}
-				}
-			}
+			return getClosedFileContents(Paths.get(uri));
 		}
 		return openFiles.get(uri);
 	}
 
+	/**
+	 * Returns the contents of a file on disk, even if it is open with
+	 * different contents.
+	 */
+	public String getContentsOnDisk(URI uri) {
+		return getClosedFileContents(Paths.get(uri));
+	}
+
+	/**
+	 * Reads a file that is not open. The contents are cached until the
+	 * file's modification time or size changes.
+	 */
+	private String getClosedFileContents(Path path) {
+		BasicFileAttributes attributes = null;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (IOException e) {
+			closedFiles.remove(path);
+			return null;
+		}
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		long size = attributes.size();
+		ClosedFileContents cached = closedFiles.get(path);
+		if (cached != null && cached.lastModified == lastModified && cached.size == size) {
+			return cached.contents;
+		}
+		String contents = null;
+		try {
+			contents = readFile(path, size);
+		} catch (IOException e) {
+			closedFiles.remove(path);
+			return null;
+		}
+		ClosedFileContents result = new ClosedFileContents();
+		result.lastModified = lastModified;
+		result.size = size;
+		result.contents = contents;
+		closedFiles.put(path, result);
+		return contents;
+	}
+
+	private String readFile(Path path, long size) throws IOException {
+		if (size < MEMORY_MAPPED_FILE_SIZE) {
+			return new String(Files.readAllBytes(path), charset);
+		}
+		//large files are decoded directly from the mapped file
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return charset.decode(buffer).toString();
+		}
+	}
+
+	private static Map<Path, ClosedFileContents> createClosedFileCache(int maxSize) {
+		return new LinkedHashMap<Path, ClosedFileContents>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, ClosedFileContents> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
 	public void setContents(URI uri, String contents) {
 		openFiles.put(uri, contents);
 	}
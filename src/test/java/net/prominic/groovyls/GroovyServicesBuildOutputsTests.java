@@ -0,0 +1,173 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.TextDocumentPositionParams;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+class GroovyServicesBuildOutputsTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace_build_outputs/";
+	private static final String PATH_SRC = "./src/main/groovy";
+	private static final String PATH_CLASSES = "./build/classes";
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+	private Path classesRoot;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE).normalize();
+		srcRoot = workspaceRoot.resolve(PATH_SRC).normalize();
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+		classesRoot = workspaceRoot.resolve(PATH_CLASSES).normalize();
+		if (!Files.exists(classesRoot)) {
+			classesRoot.toFile().mkdirs();
+		}
+
+		//closed files are compiled fully, unless they were built
+		CompilationUnitFactory compilationUnitFactory = new CompilationUnitFactory();
+		compilationUnitFactory.setDeclarationsOnlyForClosedFiles(false);
+		compilationUnitFactory.setBuildOutputDirectories(Collections.singletonList(Paths.get(PATH_CLASSES)));
+		services = new GroovyServices(compilationUnitFactory);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		services = null;
+		//the files were written by the test, so they're deleted
+		Files.walk(workspaceRoot).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		workspaceRoot = null;
+		srcRoot = null;
+		classesRoot = null;
+	}
+
+	@Test
+	void testDefinitionInBuiltFile() throws Exception {
+		String uriA = writeAndBuildFile("BuiltA.groovy",
+				"class BuiltA {\n  String method() { null }\n}\nclass BuiltExtra {}");
+		services.setWorkspaceRoot(workspaceRoot);
+		String uriB = openDocument("BuiltB.groovy",
+				"class BuiltB {\n  void test() {\n    new BuiltA().method()\n  }\n}");
+
+		//the built file is still in the compilation unit, but only with its
+		//declarations
+		TextDocumentPositionParams params = new TextDocumentPositionParams(new TextDocumentIdentifier(uriB),
+				new Position(2, 19));
+		List<? extends Location> locations = services.definition(params).get().getLeft();
+		Assertions.assertEquals(1, locations.size());
+		Assertions.assertEquals(uriA, locations.get(0).getUri());
+		Assertions.assertEquals(1, locations.get(0).getRange().getStart().getLine());
+		Assertions.assertEquals(0L, getGauge("fullyCompiledClosedFiles"));
+	}
+
+	@Test
+	void testMissingClassCompilesSource() throws Exception {
+		writeAndBuildFile("BuiltA.groovy", "class BuiltA {\n  String method() { null }\n}\nclass BuiltExtra {}");
+		//the class named for the file exists, but the other one doesn't
+		Files.delete(classesRoot.resolve("BuiltExtra.class"));
+		services.setWorkspaceRoot(workspaceRoot);
+		openDocument("BuiltB.groovy", "class BuiltB {\n  void test() {\n    new BuiltA().method()\n  }\n}");
+		Assertions.assertEquals(1L, getGauge("fullyCompiledClosedFiles"));
+	}
+
+	private String writeAndBuildFile(String fileName, String contents) throws IOException {
+		Path filePath = srcRoot.resolve(fileName);
+		Files.write(filePath, contents.getBytes(StandardCharsets.UTF_8));
+		CompilerConfiguration config = new CompilerConfiguration();
+		config.setTargetDirectory(classesRoot.toFile());
+		CompilationUnit compilationUnit = new CompilationUnit(config);
+		compilationUnit.addSource(filePath.toFile());
+		compilationUnit.compile();
+		return filePath.toUri().toString();
+	}
+
+	private String openDocument(String fileName, String contents) {
+		String uri = srcRoot.resolve(fileName).toUri().toString();
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+		return uri;
+	}
+
+	@SuppressWarnings("unchecked")
+	private long getGauge(String name) {
+		Map<String, Object> gauges = (Map<String, Object>) services.getMetrics().snapshot().get("gauges");
+		Object value = gauges.get(name);
+		return (value != null) ? (Long) value : 0L;
+	}
+}
@@ -0,0 +1,222 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.Hover;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.TextDocumentPositionParams;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+class GroovyServicesCacheInvalidationTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		srcRoot = workspaceRoot.resolve(PATH_SRC);
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+
+		services = new GroovyServices(new CompilationUnitFactory());
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+		workspaceRoot = null;
+		srcRoot = null;
+	}
+
+	@Test
+	void testHoverOnInferredTypeAfterChangingOtherFile() throws Exception {
+		String uriA = openDocument("CacheA.groovy", "class CacheA {\n  String method() { null }\n}");
+		StringBuilder contents = new StringBuilder();
+		contents.append("class CacheB {\n");
+		contents.append("  void test() {\n");
+		contents.append("    def localVar = new CacheA().method()\n");
+		contents.append("    localVar\n");
+		contents.append("  }\n");
+		contents.append("}");
+		String uriB = openDocument("CacheB.groovy", contents.toString());
+		TextDocumentPositionParams params = new TextDocumentPositionParams(new TextDocumentIdentifier(uriB),
+				new Position(3, 6));
+
+		Assertions.assertEquals("String localVar", getHoverContent(services.hover(params).get()));
+		long hits = getGauge("providerCacheHits");
+		Assertions.assertEquals("String localVar", getHoverContent(services.hover(params).get()));
+		Assertions.assertEquals(hits + 1, getGauge("providerCacheHits"));
+
+		//the type of the variable in CacheB was inferred from CacheA, so the
+		//cached type, call and hover are dropped when CacheA changes
+		changeDocument(uriA, 2, "class CacheA {\n  Integer method() { null }\n}");
+		Assertions.assertEquals("Integer localVar", getHoverContent(services.hover(params).get()));
+		Assertions.assertEquals(hits + 1, getGauge("providerCacheHits"));
+	}
+
+	@Test
+	void testHoverOnMethodCallAfterChangingOtherFile() throws Exception {
+		String uriA = openDocument("CacheA.groovy", "class CacheA {\n  String method() { null }\n}");
+		StringBuilder contents = new StringBuilder();
+		contents.append("class CacheB {\n");
+		contents.append("  void test() {\n");
+		contents.append("    new CacheA().method()\n");
+		contents.append("  }\n");
+		contents.append("}");
+		String uriB = openDocument("CacheB.groovy", contents.toString());
+		TextDocumentPositionParams params = new TextDocumentPositionParams(new TextDocumentIdentifier(uriB),
+				new Position(2, 19));
+
+		Assertions.assertEquals("public String method()", getHoverContent(services.hover(params).get()));
+
+		changeDocument(uriA, 2, "class CacheA {\n  Integer method(String arg = null) { null }\n}");
+		Assertions.assertEquals("public Integer method(String arg)", getHoverContent(services.hover(params).get()));
+	}
+
+	@Test
+	void testDefinitionOfMethodCallAfterChangingOtherFile() throws Exception {
+		String uriA = openDocument("CacheA.groovy", "class CacheA {\n  String method() { null }\n}");
+		StringBuilder contents = new StringBuilder();
+		contents.append("class CacheB {\n");
+		contents.append("  void test() {\n");
+		contents.append("    new CacheA().method()\n");
+		contents.append("  }\n");
+		contents.append("}");
+		String uriB = openDocument("CacheB.groovy", contents.toString());
+		TextDocumentPositionParams params = new TextDocumentPositionParams(new TextDocumentIdentifier(uriB),
+				new Position(2, 19));
+
+		List<? extends Location> locations = services.definition(params).get().getLeft();
+		Assertions.assertEquals(1, locations.size());
+		Assertions.assertEquals(uriA, locations.get(0).getUri());
+		Assertions.assertEquals(1, locations.get(0).getRange().getStart().getLine());
+
+		//the resolved call and the cached definition point into the old
+		//version of CacheA, so they must be dropped when it changes
+		changeDocument(uriA, 2, "class CacheA {\n\n\n  String method() { null }\n}");
+		locations = services.definition(params).get().getLeft();
+		Assertions.assertEquals(1, locations.size());
+		Assertions.assertEquals(uriA, locations.get(0).getUri());
+		Assertions.assertEquals(3, locations.get(0).getRange().getStart().getLine());
+	}
+
+	@Test
+	void testUnrelatedChangeKeepsCachedResult() throws Exception {
+		openDocument("CacheA.groovy", "class CacheA {\n  String method() { null }\n}");
+		String uriC = openDocument("CacheC.groovy", "class CacheC {}");
+		StringBuilder contents = new StringBuilder();
+		contents.append("class CacheB {\n");
+		contents.append("  void test() {\n");
+		contents.append("    def localVar = new CacheA().method()\n");
+		contents.append("    localVar\n");
+		contents.append("  }\n");
+		contents.append("}");
+		String uriB = openDocument("CacheB.groovy", contents.toString());
+		TextDocumentPositionParams params = new TextDocumentPositionParams(new TextDocumentIdentifier(uriB),
+				new Position(3, 6));
+
+		Assertions.assertEquals("String localVar", getHoverContent(services.hover(params).get()));
+		long hits = getGauge("providerCacheHits");
+		changeDocument(uriC, 2, "class CacheC {\n  int field\n}");
+		Assertions.assertEquals("String localVar", getHoverContent(services.hover(params).get()));
+		Assertions.assertEquals(hits + 1, getGauge("providerCacheHits"));
+	}
+
+	private String openDocument(String fileName, String contents) {
+		String uri = srcRoot.resolve(fileName).toUri().toString();
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+		return uri;
+	}
+
+	private void changeDocument(String uri, int version, String contents) {
+		services.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, version),
+				Collections.singletonList(new TextDocumentContentChangeEvent(contents))));
+	}
+
+	private String getHoverContent(Hover hover) {
+		return hover.getContents().getLeft().get(0).getRight().getValue();
+	}
+
+	@SuppressWarnings("unchecked")
+	private long getGauge(String name) {
+		Map<String, Object> gauges = (Map<String, Object>) services.getMetrics().snapshot().get("gauges");
+		Object value = gauges.get(name);
+		return (value != null) ? (Long) value : 0L;
+	}
+}
@@ -0,0 +1,317 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidCloseTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.Hover;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ReferenceContext;
+import org.eclipse.lsp4j.ReferenceParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.TextDocumentPositionParams;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+class GroovyServicesClosedFilesTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace_closed/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+	private Map<String, List<Diagnostic>> diagnosticsByURI;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE).normalize();
+		srcRoot = workspaceRoot.resolve(PATH_SRC).normalize();
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+		diagnosticsByURI = new HashMap<>();
+
+		//closed files are compiled with their declarations only
+		services = new GroovyServices(new CompilationUnitFactory());
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+				diagnosticsByURI.put(diagnostics.getUri(), new ArrayList<>(diagnostics.getDiagnostics()));
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		services = null;
+		//the files were written by the test, so they're deleted
+		Files.walk(workspaceRoot).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		workspaceRoot = null;
+		srcRoot = null;
+		diagnosticsByURI = null;
+	}
+
+	@Test
+	void testDefinitionInClosedFile() throws Exception {
+		String uriA = writeFile("ClosedA.groovy", "class ClosedA {\n  String method() { null }\n}");
+		services.setWorkspaceRoot(workspaceRoot);
+		String uriB = openDocument("ClosedB.groovy",
+				"class ClosedB {\n  void test() {\n    new ClosedA().method()\n  }\n}");
+
+		TextDocumentPositionParams params = new TextDocumentPositionParams(new TextDocumentIdentifier(uriB),
+				new Position(2, 19));
+		List<? extends Location> locations = services.definition(params).get().getLeft();
+		Assertions.assertEquals(1, locations.size());
+		Assertions.assertEquals(uriA, locations.get(0).getUri());
+		Assertions.assertEquals(1, locations.get(0).getRange().getStart().getLine());
+		//the declarations were enough, so the closed file wasn't promoted
+		Assertions.assertEquals(0L, getGauge("fullyCompiledClosedFiles"));
+	}
+
+	@Test
+	void testHoverOnDeclarationInClosedFile() throws Exception {
+		writeFile("ClosedA.groovy", "class ClosedA {\n  String method() { null }\n}");
+		services.setWorkspaceRoot(workspaceRoot);
+		String uriB = openDocument("ClosedB.groovy",
+				"class ClosedB {\n  void test() {\n    new ClosedA().method()\n  }\n}");
+
+		TextDocumentPositionParams params = new TextDocumentPositionParams(new TextDocumentIdentifier(uriB),
+				new Position(2, 19));
+		Hover hover = services.hover(params).get();
+		Assertions.assertEquals("public String method()", hover.getContents().getLeft().get(0).getRight().getValue());
+		Assertions.assertEquals(0L, getGauge("fullyCompiledClosedFiles"));
+	}
+
+	@Test
+	void testReferencesPromoteClosedFiles() throws Exception {
+		writeFile("ClosedA.groovy", "class ClosedA {\n  void method() {}\n}");
+		String uriC = writeFile("ClosedC.groovy",
+				"class ClosedC {\n  void test() {\n    new ClosedA().method()\n  }\n}");
+		services.setWorkspaceRoot(workspaceRoot);
+		String uriB = openDocument("ClosedB.groovy",
+				"class ClosedB {\n  void test() {\n    new ClosedA().method()\n  }\n}");
+		Assertions.assertEquals(0L, getGauge("fullyCompiledClosedFiles"));
+
+		//the call in the closed file is in a method body, so it's only found
+		//after the closed files are compiled fully
+		ReferenceParams params = new ReferenceParams(new ReferenceContext(false));
+		params.setTextDocument(new TextDocumentIdentifier(uriB));
+		params.setPosition(new Position(2, 19));
+		List<? extends Location> locations = services.references(params).get();
+		Assertions.assertTrue(locations.stream().anyMatch(location -> location.getUri().equals(uriC)));
+		Assertions.assertTrue(locations.stream().anyMatch(location -> location.getUri().equals(uriB)));
+		Assertions.assertEquals(2L, getGauge("fullyCompiledClosedFiles"));
+	}
+
+	@Test
+	void testReferencesPromoteOnlyDependents() throws Exception {
+		writeFile("ClosedA.groovy", "class ClosedA {\n  void method() {}\n}");
+		String uriC = writeFile("ClosedC.groovy",
+				"class ClosedC {\n  void test() {\n    new ClosedA().method()\n  }\n}");
+		writeFile("ClosedD.groovy", "class ClosedD {\n  void test() {\n    println 'unrelated'\n  }\n}");
+		services.setWorkspaceRoot(workspaceRoot);
+		String uriB = openDocument("ClosedB.groovy",
+				"class ClosedB {\n  void test() {\n    new ClosedA().method()\n  }\n}");
+
+		//the closed file that doesn't use the class of the method keeps its
+		//declarations only
+		ReferenceParams params = new ReferenceParams(new ReferenceContext(false));
+		params.setTextDocument(new TextDocumentIdentifier(uriB));
+		params.setPosition(new Position(2, 19));
+		List<? extends Location> locations = services.references(params).get();
+		Assertions.assertTrue(locations.stream().anyMatch(location -> location.getUri().equals(uriC)));
+		Assertions.assertEquals(2L, getGauge("fullyCompiledClosedFiles"));
+	}
+
+	@Test
+	void testReferencesToLocalsDoNotPromoteClosedFiles() throws Exception {
+		writeFile("ClosedA.groovy", "class ClosedA {\n  void method() {}\n}");
+		services.setWorkspaceRoot(workspaceRoot);
+		String uriB = openDocument("ClosedB.groovy",
+				"class ClosedB {\n  private void helper() {}\n  void test() {\n    def localVar = 123\n    localVar\n    helper()\n  }\n}");
+
+		ReferenceParams params = new ReferenceParams(new ReferenceContext(false));
+		params.setTextDocument(new TextDocumentIdentifier(uriB));
+		params.setPosition(new Position(4, 6));
+		Assertions.assertFalse(services.references(params).get().isEmpty());
+		Assertions.assertEquals(0L, getGauge("fullyCompiledClosedFiles"));
+
+		//a private method may only be called in its own file
+		params.setPosition(new Position(5, 6));
+		Assertions.assertFalse(services.references(params).get().isEmpty());
+		Assertions.assertEquals(0L, getGauge("fullyCompiledClosedFiles"));
+	}
+
+	@Test
+	void testOpenPromotesClosedFile() throws Exception {
+		String contents = "class ClosedA {\n  void test() {\n    def localVar = \"hello\"\n    localVar\n  }\n}";
+		String uriA = writeFile("ClosedA.groovy", contents);
+		services.setWorkspaceRoot(workspaceRoot);
+		openDocument("ClosedB.groovy", "class ClosedB {}");
+		Assertions.assertEquals(0L, getGauge("fullyCompiledClosedFiles"));
+
+		//the open document is compiled fully, and its version stays
+		//compiled fully after it's closed without changes
+		openDocument("ClosedA.groovy", contents);
+		long sourcesCompiled = getTotalSourcesCompiled();
+		services.didClose(new DidCloseTextDocumentParams(new TextDocumentIdentifier(uriA)));
+		Assertions.assertEquals(sourcesCompiled, getTotalSourcesCompiled());
+		Assertions.assertEquals(1L, getGauge("fullyCompiledClosedFiles"));
+
+		TextDocumentPositionParams params = new TextDocumentPositionParams(new TextDocumentIdentifier(uriA),
+				new Position(3, 6));
+		Hover hover = services.hover(params).get();
+		Assertions.assertEquals("String localVar", hover.getContents().getLeft().get(0).getRight().getValue());
+		Assertions.assertEquals(sourcesCompiled, getTotalSourcesCompiled());
+	}
+
+	@Test
+	void testReopenUnchangedDocumentWithoutCompiling() throws Exception {
+		String contents = "class ClosedA {\n  ClosedMissing field\n}";
+		String uriA = writeFile("ClosedA.groovy", contents);
+		services.setWorkspaceRoot(workspaceRoot);
+		openDocument("ClosedA.groovy", contents);
+		List<Diagnostic> diagnostics = diagnosticsByURI.get(uriA);
+		Assertions.assertFalse(diagnostics.isEmpty());
+		long sourcesCompiled = getTotalSourcesCompiled();
+
+		//the contents on disk are the same as the closed document, and
+		//reopening it with the same text reuses the same module
+		services.didClose(new DidCloseTextDocumentParams(new TextDocumentIdentifier(uriA)));
+		diagnosticsByURI.remove(uriA);
+		openDocument("ClosedA.groovy", contents);
+		Assertions.assertEquals(sourcesCompiled, getTotalSourcesCompiled());
+		Assertions.assertEquals(diagnostics, diagnosticsByURI.get(uriA));
+
+		TextDocumentPositionParams params = new TextDocumentPositionParams(new TextDocumentIdentifier(uriA),
+				new Position(1, 17));
+		Hover hover = services.hover(params).get();
+		Assertions.assertEquals("ClosedMissing field", hover.getContents().getLeft().get(0).getRight().getValue());
+		Assertions.assertEquals(sourcesCompiled, getTotalSourcesCompiled());
+	}
+
+	@Test
+	void testHoverInEvictedFileCompilesItAgain() throws Exception {
+		services.setResidencyCapacity(1);
+		String uriA = writeFile("ClosedA.groovy",
+				"class ClosedA {\n  void test() {\n    def localVar = \"hello\"\n    localVar\n  }\n}");
+		String uriC = writeFile("ClosedC.groovy",
+				"class ClosedC {\n  void test() {\n    def localVar = 123\n    localVar\n  }\n}");
+		services.setWorkspaceRoot(workspaceRoot);
+		String uriB = openDocument("ClosedB.groovy", "class ClosedB {}");
+		TextDocumentPositionParams paramsA = new TextDocumentPositionParams(new TextDocumentIdentifier(uriA),
+				new Position(3, 6));
+		TextDocumentPositionParams paramsC = new TextDocumentPositionParams(new TextDocumentIdentifier(uriC),
+				new Position(3, 6));
+		Assertions.assertEquals("String localVar", services.hover(paramsA).get().getContents().getLeft().get(0)
+				.getRight().getValue());
+		Assertions.assertEquals("int localVar", services.hover(paramsC).get().getContents().getLeft().get(0)
+				.getRight().getValue());
+
+		//only the most recently used closed file keeps its body after the
+		//next compile
+		services.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uriB, 2),
+				Collections.singletonList(new TextDocumentContentChangeEvent("class ClosedB {\n}"))));
+		services.compilePendingChanges();
+		Assertions.assertEquals(1L, getGauge("evictedFiles"));
+		Assertions.assertEquals(1L, getGauge("fullyCompiledClosedFiles"));
+
+		long sourcesCompiled = getTotalSourcesCompiled();
+		Assertions.assertEquals("String localVar", services.hover(paramsA).get().getContents().getLeft().get(0)
+				.getRight().getValue());
+		Assertions.assertEquals(sourcesCompiled + 1, getTotalSourcesCompiled());
+	}
+
+	private String writeFile(String fileName, String contents) throws IOException {
+		Path filePath = srcRoot.resolve(fileName);
+		Files.write(filePath, contents.getBytes(StandardCharsets.UTF_8));
+		return filePath.toUri().toString();
+	}
+
+	private String openDocument(String fileName, String contents) {
+		String uri = srcRoot.resolve(fileName).toUri().toString();
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+		return uri;
+	}
+
+	@SuppressWarnings("unchecked")
+	private long getGauge(String name) {
+		Map<String, Object> gauges = (Map<String, Object>) services.getMetrics().snapshot().get("gauges");
+		Object value = gauges.get(name);
+		return (value != null) ? (Long) value : 0L;
+	}
+
+	@SuppressWarnings("unchecked")
+	private long getTotalSourcesCompiled() {
+		Map<String, Object> compile = (Map<String, Object>) services.getMetrics().snapshot().get("compile");
+		return (Long) compile.get("totalSourcesCompiled");
+	}
+}
@@ -22,7 +22,9 @@ package net.prominic.groovyls;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -30,14 +32,18 @@ import org.eclipse.lsp4j.CompletionItem;
 import org.eclipse.lsp4j.CompletionItemKind;
 import org.eclipse.lsp4j.CompletionList;
 import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.junit.jupiter.api.AfterEach;
@@ -119,8 +125,8 @@ class GroovyServicesCompletionTests {
 		Position position = new Position(3, 13);
 		Either<List<CompletionItem>, CompletionList> result = services
 				.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
 		Assertions.assertTrue(items.size() > 0);
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
 			return item.getLabel().equals("charAt") && item.getKind().equals(CompletionItemKind.Method);
@@ -145,8 +151,8 @@ class GroovyServicesCompletionTests {
 		Position position = new Position(3, 14);
 		Either<List<CompletionItem>, CompletionList> result = services
 				.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
 		Assertions.assertTrue(items.size() > 0);
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
 			return item.getLabel().equals("charAt") && item.getKind().equals(CompletionItemKind.Method);
@@ -171,8 +177,8 @@ class GroovyServicesCompletionTests {
 		Position position = new Position(3, 9);
 		Either<List<CompletionItem>, CompletionList> result = services
 				.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
 		Assertions.assertTrue(items.size() > 0);
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
 			return item.getLabel().equals("memberVar") && item.getKind().equals(CompletionItemKind.Field);
@@ -197,8 +203,8 @@ class GroovyServicesCompletionTests {
 		Position position = new Position(2, 15);
 		Either<List<CompletionItem>, CompletionList> result = services
 				.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
 		Assertions.assertTrue(items.size() > 0);
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
 			return item.getLabel().equals("staticMethod") && item.getKind().equals(CompletionItemKind.Method);
@@ -223,8 +229,8 @@ class GroovyServicesCompletionTests {
 		Position position = new Position(3, 16);
 		Either<List<CompletionItem>, CompletionList> result = services
 				.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
 		Assertions.assertTrue(items.size() > 0);
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
 			return item.getLabel().equals("charAt") && item.getKind().equals(CompletionItemKind.Method);
@@ -249,8 +255,8 @@ class GroovyServicesCompletionTests {
 		Position position = new Position(3, 18);
 		Either<List<CompletionItem>, CompletionList> result = services
 				.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
 		Assertions.assertEquals(1, items.size());
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
 			return item.getLabel().equals("charAt") && item.getKind().equals(CompletionItemKind.Method);
@@ -279,8 +285,8 @@ class GroovyServicesCompletionTests {
 		Position position = new Position(2, 11);
 		Either<List<CompletionItem>, CompletionList> result = services
 				.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
 		Assertions.assertEquals(2, items.size());
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
 			return (item.getLabel().equals("abc") && item.getKind().equals(CompletionItemKind.Method))
@@ -291,8 +297,8 @@ class GroovyServicesCompletionTests {
 		//...and this one should only include the one with the longer name
 		position = new Position(2, 13);
 		result = services.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		items = result.getRight().getItems();
 		Assertions.assertEquals(1, items.size());
 		CompletionItem item = items.get(0);
 		Assertions.assertEquals("abcdef", item.getLabel());
@@ -317,8 +323,8 @@ class GroovyServicesCompletionTests {
 		Position position = new Position(3, 13);
 		Either<List<CompletionItem>, CompletionList> result = services
 				.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
 		Assertions.assertTrue(items.size() > 0);
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
 			return item.getLabel().equals("charAt") && item.getKind().equals(CompletionItemKind.Method);
@@ -344,8 +350,8 @@ class GroovyServicesCompletionTests {
 		Position position = new Position(3, 13);
 		Either<List<CompletionItem>, CompletionList> result = services
 				.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
 		Assertions.assertTrue(items.size() > 0);
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
 			return item.getLabel().equals("charAt") && item.getKind().equals(CompletionItemKind.Method);
@@ -370,8 +376,8 @@ class GroovyServicesCompletionTests {
 		Position position = new Position(3, 7);
 		Either<List<CompletionItem>, CompletionList> result = services
 				.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
 		Assertions.assertEquals(1, items.size());
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
 			return item.getLabel().equals("memberVar") && item.getKind().equals(CompletionItemKind.Field);
@@ -379,6 +385,30 @@ class GroovyServicesCompletionTests {
 		Assertions.assertEquals(1, filteredItems.size());
 	}
 
+	@Test
+	void testCompletionOnPartialVariableExpressionInStaticMethod() throws Exception {
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Completion {\n");
+		contents.append("  String memberVar\n");
+		contents.append("  static String memberStaticVar\n");
+		contents.append("  static void staticMethod() {\n");
+		contents.append("    mem\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(4, 7);
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
+		Assertions.assertEquals(1, items.size());
+		Assertions.assertEquals("memberStaticVar", items.get(0).getLabel());
+	}
+
 	@Test
 	void testCompletionOnCompleteVariableExpression() throws Exception {
 		Path filePath = srcRoot.resolve("Completion.groovy");
@@ -396,12 +426,95 @@ class GroovyServicesCompletionTests {
 		Position position = new Position(3, 7);
 		Either<List<CompletionItem>, CompletionList> result = services
 				.completion(new CompletionParams(textDocument, position)).get();
-		Assertions.assertTrue(result.isLeft());
-		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
 		Assertions.assertEquals(1, items.size());
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
 			return item.getLabel().equals("memberVar") && item.getKind().equals(CompletionItemKind.Field);
 		}).collect(Collectors.toList());
 		Assertions.assertEquals(1, filteredItems.size());
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testMemberAccessOnLocalVariableAfterTypingMoreOfPropertyName() throws Exception {
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Completion {\n");
+		contents.append("  public Completion() {\n");
+		contents.append("    String localVar\n");
+		contents.append("    localVar.\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(3, 13);
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isRight());
+		Assertions.assertFalse(result.getRight().isIncomplete());
+
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
+				new Range(position, position), 0, "ch");
+		services.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, 2),
+				Collections.singletonList(changeEvent)));
+		result = services.completion(new CompletionParams(textDocument, new Position(3, 15))).get();
+		Assertions.assertTrue(result.isRight());
+		List<CompletionItem> items = result.getRight().getItems();
+		Assertions.assertTrue(items.size() > 0);
+		Assertions.assertTrue(items.stream().allMatch(item -> item.getLabel().startsWith("ch")));
+		//the candidates of the first request were filtered again, instead of
+		//being resolved from the AST
+		Assertions.assertEquals(1L, getGauge("completionSessionHits"));
+		List<CompletionItem> filteredItems = items.stream().filter(item -> {
+			return item.getLabel().equals("charAt") && item.getKind().equals(CompletionItemKind.Method);
+		}).collect(Collectors.toList());
+		Assertions.assertEquals(1, filteredItems.size());
+	}
+
+	@Test
+	void testCompletionSessionDoesNotWaitForCompile() throws Exception {
+		services.setCompileDelay(60_000);
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Completion {\n");
+		contents.append("  public Completion() {\n");
+		contents.append("    String localVar\n");
+		contents.append("    localVar.\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(3, 13);
+		services.completion(new CompletionParams(textDocument, position)).get();
+		Object sourcesCompiled = getCompileMetric("totalSourcesCompiled");
+
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
+				new Range(position, position), 0, "ch");
+		services.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, 2),
+				Collections.singletonList(changeEvent)));
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, new Position(3, 15))).get();
+		List<CompletionItem> items = result.getRight().getItems();
+		Assertions.assertTrue(items.size() > 0);
+		Assertions.assertTrue(items.stream().allMatch(item -> item.getLabel().startsWith("ch")));
+		//the change is still waiting to be compiled
+		Assertions.assertEquals(1L, getGauge("completionSessionHits"));
+		Assertions.assertEquals(sourcesCompiled, getCompileMetric("totalSourcesCompiled"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object getCompileMetric(String name) {
+		Map<String, Object> compile = (Map<String, Object>) services.getMetrics().snapshot().get("compile");
+		return compile.get(name);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object getGauge(String name) {
+		Map<String, Object> gauges = (Map<String, Object>) services.getMetrics().snapshot().get("gauges");
+		return gauges.get(name);
+	}
+}
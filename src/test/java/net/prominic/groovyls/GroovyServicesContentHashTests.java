@@ -0,0 +1,201 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidChangeWatchedFilesParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.FileChangeType;
+import org.eclipse.lsp4j.FileEvent;
+import org.eclipse.lsp4j.Hover;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.TextDocumentPositionParams;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+class GroovyServicesContentHashTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace_content/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+	private Map<String, List<Diagnostic>> diagnosticsByURI;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE).normalize();
+		srcRoot = workspaceRoot.resolve(PATH_SRC).normalize();
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+		diagnosticsByURI = new HashMap<>();
+
+		services = new GroovyServices(new CompilationUnitFactory());
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+				diagnosticsByURI.put(diagnostics.getUri(), new ArrayList<>(diagnostics.getDiagnostics()));
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+		//every change is compiled right away
+		services.setCompileDelay(0);
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		services = null;
+		//the files were written by the test, so they're deleted
+		Files.walk(workspaceRoot).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		workspaceRoot = null;
+		srcRoot = null;
+		diagnosticsByURI = null;
+	}
+
+	@Test
+	void testUndoRestoresPreviousModuleAndDiagnostics() throws Exception {
+		services.setWorkspaceRoot(workspaceRoot);
+		String contents = "class ContentHash {\n  ContentHashMissing field\n}";
+		String uri = openDocument("ContentHash.groovy", contents);
+		List<Diagnostic> diagnostics = getDiagnostics(uri);
+		Assertions.assertFalse(diagnostics.isEmpty());
+
+		changeDocument(uri, 2, "class ContentHash {\n  String field\n}");
+		Assertions.assertTrue(getDiagnostics(uri).isEmpty());
+
+		//undoing the change restores the module that was compiled before,
+		//along with its diagnostics
+		long sourcesCompiled = getTotalSourcesCompiled();
+		changeDocument(uri, 3, contents);
+		Assertions.assertEquals(sourcesCompiled, getTotalSourcesCompiled());
+		Assertions.assertEquals(diagnostics, getDiagnostics(uri));
+		TextDocumentPositionParams params = new TextDocumentPositionParams(new TextDocumentIdentifier(uri),
+				new Position(1, 22));
+		Hover hover = services.hover(params).get();
+		Assertions.assertEquals("ContentHashMissing field",
+				hover.getContents().getLeft().get(0).getRight().getValue());
+	}
+
+	@Test
+	void testIdenticalWatchedFileNotCompiled() throws Exception {
+		String uri = writeFile("ContentHash.groovy", "class ContentHash {}");
+		services.setWorkspaceRoot(workspaceRoot);
+		openDocument("ContentHashOpen.groovy", "class ContentHashOpen {}");
+		long sourcesCompiled = getTotalSourcesCompiled();
+
+		//a checkout or a formatter may touch a file without changing it
+		writeFile("ContentHash.groovy", "class ContentHash {}");
+		services.didChangeWatchedFiles(new DidChangeWatchedFilesParams(
+				Collections.singletonList(new FileEvent(uri, FileChangeType.Changed))));
+		Assertions.assertEquals(sourcesCompiled, getTotalSourcesCompiled());
+		Assertions.assertEquals(1L, getGauge("unchangedFiles"));
+
+		writeFile("ContentHash.groovy", "class ContentHash {\n  String field\n}");
+		services.didChangeWatchedFiles(new DidChangeWatchedFilesParams(
+				Collections.singletonList(new FileEvent(uri, FileChangeType.Changed))));
+		Assertions.assertEquals(sourcesCompiled + 1, getTotalSourcesCompiled());
+		Assertions.assertEquals(0L, getGauge("unchangedFiles"));
+	}
+
+	private String writeFile(String fileName, String contents) throws IOException {
+		Path filePath = srcRoot.resolve(fileName);
+		Files.write(filePath, contents.getBytes(StandardCharsets.UTF_8));
+		return filePath.toUri().toString();
+	}
+
+	private String openDocument(String fileName, String contents) {
+		String uri = srcRoot.resolve(fileName).toUri().toString();
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+		return uri;
+	}
+
+	private void changeDocument(String uri, int version, String contents) {
+		services.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, version),
+				Collections.singletonList(new TextDocumentContentChangeEvent(contents))));
+	}
+
+	private List<Diagnostic> getDiagnostics(String uri) {
+		List<Diagnostic> diagnostics = diagnosticsByURI.get(uri);
+		return (diagnostics != null) ? diagnostics : Collections.emptyList();
+	}
+
+	@SuppressWarnings("unchecked")
+	private long getGauge(String name) {
+		Map<String, Object> gauges = (Map<String, Object>) services.getMetrics().snapshot().get("gauges");
+		Object value = gauges.get(name);
+		return (value != null) ? (Long) value : 0L;
+	}
+
+	@SuppressWarnings("unchecked")
+	private long getTotalSourcesCompiled() {
+		Map<String, Object> compile = (Map<String, Object>) services.getMetrics().snapshot().get("compile");
+		return (Long) compile.get("totalSourcesCompiled");
+	}
+}
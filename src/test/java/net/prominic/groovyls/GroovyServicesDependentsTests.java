@@ -0,0 +1,187 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+class GroovyServicesDependentsTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+	private Map<String, List<Diagnostic>> diagnosticsByURI;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		srcRoot = workspaceRoot.resolve(PATH_SRC);
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+		diagnosticsByURI = new HashMap<>();
+
+		services = new GroovyServices(new CompilationUnitFactory());
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+				diagnosticsByURI.put(diagnostics.getUri(), new ArrayList<>(diagnostics.getDiagnostics()));
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+		workspaceRoot = null;
+		srcRoot = null;
+		diagnosticsByURI = null;
+	}
+
+	@Test
+	void testRenamedClassReportedInUnchangedFile() throws Exception {
+		String uriA = openDocument("DependentsA.groovy", "class DependentsA {}");
+		String uriB = openDocument("DependentsB.groovy", "class DependentsB {\n  DependentsA a\n}");
+		Assertions.assertTrue(getDiagnostics(uriB).isEmpty());
+
+		//DependentsB didn't change, but the class that it uses no longer
+		//exists, so it needs to be compiled again
+		changeDocument(uriA, 2, "class DependentsRenamed {}");
+		List<Diagnostic> diagnostics = getDiagnostics(uriB);
+		Assertions.assertFalse(diagnostics.isEmpty());
+		Assertions.assertTrue(diagnostics.stream()
+				.allMatch(diagnostic -> diagnostic.getMessage().contains("unable to resolve class DependentsA")));
+	}
+
+	@Test
+	void testRestoredClassClearsErrorInUnchangedFile() throws Exception {
+		String uriA = openDocument("DependentsA.groovy", "class DependentsRenamed {}");
+		String uriB = openDocument("DependentsB.groovy", "class DependentsB {\n  DependentsA a\n}");
+		Assertions.assertFalse(getDiagnostics(uriB).isEmpty());
+
+		//a file with errors didn't depend on the missing class, but it may
+		//be able to resolve it now
+		long sourcesCompiled = getTotalSourcesCompiled();
+		changeDocument(uriA, 2, "class DependentsA {}");
+		Assertions.assertEquals(sourcesCompiled + 2, getTotalSourcesCompiled());
+		Assertions.assertTrue(getDiagnostics(uriB).isEmpty());
+	}
+
+	@Test
+	void testUnrelatedClassDoesNotRecompileFileWithErrors() throws Exception {
+		String uriA = openDocument("DependentsA.groovy", "class DependentsA {}");
+		String uriB = openDocument("DependentsB.groovy", "class DependentsB {\n  DependentsMissing a\n}");
+		Assertions.assertFalse(getDiagnostics(uriB).isEmpty());
+
+		//the changed file doesn't declare the class that couldn't be
+		//resolved, so the file with errors is kept
+		long sourcesCompiled = getTotalSourcesCompiled();
+		changeDocument(uriA, 2, "class DependentsA {\n  void method() {}\n}");
+		Assertions.assertEquals(sourcesCompiled + 1, getTotalSourcesCompiled());
+		Assertions.assertFalse(getDiagnostics(uriB).isEmpty());
+	}
+
+	@Test
+	void testOnlyChangedSignatureRecompilesDependents() throws Exception {
+		String uriA = openDocument("DependentsA.groovy", "class DependentsA {\n  void method() {}\n}");
+		openDocument("DependentsB.groovy", "class DependentsB {\n  DependentsA a\n}");
+
+		long sourcesCompiled = getTotalSourcesCompiled();
+		changeDocument(uriA, 2, "class DependentsA {\n  void method() { println 'changed' }\n}");
+		Assertions.assertEquals(sourcesCompiled + 1, getTotalSourcesCompiled());
+
+		sourcesCompiled = getTotalSourcesCompiled();
+		changeDocument(uriA, 3, "class DependentsA {\n  void method(String arg) {}\n}");
+		Assertions.assertEquals(sourcesCompiled + 2, getTotalSourcesCompiled());
+	}
+
+	private String openDocument(String fileName, String contents) {
+		String uri = srcRoot.resolve(fileName).toUri().toString();
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+		return uri;
+	}
+
+	private void changeDocument(String uri, int version, String contents) {
+		services.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, version),
+				Collections.singletonList(new TextDocumentContentChangeEvent(contents))));
+		services.compilePendingChanges();
+	}
+
+	private List<Diagnostic> getDiagnostics(String uri) {
+		List<Diagnostic> diagnostics = diagnosticsByURI.get(uri);
+		return (diagnostics != null) ? diagnostics : Collections.emptyList();
+	}
+
+	@SuppressWarnings("unchecked")
+	private long getTotalSourcesCompiled() {
+		Map<String, Object> compile = (Map<String, Object>) services.getMetrics().snapshot().get("compile");
+		return (Long) compile.get("totalSourcesCompiled");
+	}
+}
@@ -0,0 +1,205 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+class GroovyServicesDiagnosticsTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+	private Map<String, List<Diagnostic>> diagnosticsByURI;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		srcRoot = workspaceRoot.resolve(PATH_SRC);
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+		diagnosticsByURI = new HashMap<>();
+
+		services = new GroovyServices(new CompilationUnitFactory());
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+				diagnosticsByURI.put(diagnostics.getUri(), new ArrayList<>(diagnostics.getDiagnostics()));
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+		//the compile should only happen when the test asks for it
+		services.setCompileDelay(60_000);
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+		workspaceRoot = null;
+		srcRoot = null;
+		diagnosticsByURI = null;
+	}
+
+	@Test
+	void testSyntaxErrorPublishedBeforeCompile() throws Exception {
+		String uri = openDocument("Diagnostics.groovy", "class Diagnostics {}");
+		Assertions.assertTrue(getDiagnostics(uri).isEmpty());
+		long sourcesCompiled = getTotalSourcesCompiled();
+
+		changeDocument(uri, 2, "class Diagnostics {");
+		Assertions.assertEquals(1, getDiagnostics(uri).size());
+		Assertions.assertEquals(sourcesCompiled, getTotalSourcesCompiled());
+
+		services.compilePendingChanges();
+		Assertions.assertEquals(sourcesCompiled + 1, getTotalSourcesCompiled());
+		Assertions.assertEquals(1, getDiagnostics(uri).size());
+	}
+
+	@Test
+	void testFixedSyntaxErrorClearedBeforeCompile() throws Exception {
+		String uri = openDocument("Diagnostics.groovy", "class Diagnostics {}");
+		long sourcesCompiled = getTotalSourcesCompiled();
+
+		changeDocument(uri, 2, "class Diagnostics {");
+		Assertions.assertEquals(1, getDiagnostics(uri).size());
+		changeDocument(uri, 3, "class Diagnostics {}");
+		Assertions.assertTrue(getDiagnostics(uri).isEmpty());
+		Assertions.assertEquals(sourcesCompiled, getTotalSourcesCompiled());
+	}
+
+	@Test
+	void testFixedUnresolvedClassClearedBeforeCompile() throws Exception {
+		String uri = openDocument("Diagnostics.groovy", "class Diagnostics {\n  DiagnosticsMissing field\n}");
+		Assertions.assertFalse(getDiagnostics(uri).isEmpty());
+		long sourcesCompiled = getTotalSourcesCompiled();
+
+		//the errors from the last compile may not apply to the new text
+		changeDocument(uri, 2, "class Diagnostics {\n  String field\n}");
+		Assertions.assertTrue(getDiagnostics(uri).isEmpty());
+		Assertions.assertEquals(sourcesCompiled, getTotalSourcesCompiled());
+	}
+
+	@Test
+	void testUnresolvedClassWaitsForCompile() throws Exception {
+		String uri = openDocument("Diagnostics.groovy", "class Diagnostics {}");
+		long sourcesCompiled = getTotalSourcesCompiled();
+
+		//the syntax is valid, so only the compile can find the error
+		changeDocument(uri, 2, "class Diagnostics {\n  DiagnosticsMissing field\n}");
+		Assertions.assertTrue(getDiagnostics(uri).isEmpty());
+		Assertions.assertEquals(sourcesCompiled, getTotalSourcesCompiled());
+
+		services.compilePendingChanges();
+		Assertions.assertEquals(sourcesCompiled + 1, getTotalSourcesCompiled());
+		Assertions.assertFalse(getDiagnostics(uri).isEmpty());
+	}
+
+	@Test
+	void testPendingChangesCountedUntilCompile() throws Exception {
+		String uri = openDocument("Diagnostics.groovy", "class Diagnostics {}");
+		Assertions.assertEquals(0L, getGauge("pendingChanges"));
+
+		changeDocument(uri, 2, "class Diagnostics {\n}");
+		changeDocument(uri, 3, "class Diagnostics {\n\n}");
+		Assertions.assertEquals(2L, getGauge("pendingChanges"));
+
+		services.compilePendingChanges();
+		Assertions.assertEquals(0L, getGauge("pendingChanges"));
+	}
+
+	private String openDocument(String fileName, String contents) {
+		String uri = srcRoot.resolve(fileName).toUri().toString();
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+		return uri;
+	}
+
+	private void changeDocument(String uri, int version, String contents) {
+		services.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, version),
+				Collections.singletonList(new TextDocumentContentChangeEvent(contents))));
+	}
+
+	private List<Diagnostic> getDiagnostics(String uri) {
+		List<Diagnostic> diagnostics = diagnosticsByURI.get(uri);
+		return (diagnostics != null) ? diagnostics : Collections.emptyList();
+	}
+
+	@SuppressWarnings("unchecked")
+	private long getGauge(String name) {
+		Map<String, Object> gauges = (Map<String, Object>) services.getMetrics().snapshot().get("gauges");
+		Object value = gauges.get(name);
+		return (value != null) ? (Long) value : 0L;
+	}
+
+	@SuppressWarnings("unchecked")
+	private long getTotalSourcesCompiled() {
+		Map<String, Object> compile = (Map<String, Object>) services.getMetrics().snapshot().get("compile");
+		return (Long) compile.get("totalSourcesCompiled");
+	}
+}
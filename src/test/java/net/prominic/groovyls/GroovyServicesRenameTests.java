@@ -0,0 +1,280 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.RenameFile;
+import org.eclipse.lsp4j.RenameParams;
+import org.eclipse.lsp4j.ResourceOperation;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentEdit;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.WorkspaceEdit;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+class GroovyServicesRenameTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		srcRoot = workspaceRoot.resolve(PATH_SRC);
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+
+		services = new GroovyServices(new CompilationUnitFactory());
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+		workspaceRoot = null;
+		srcRoot = null;
+	}
+
+	@Test
+	void testRenameClass() throws Exception {
+		Path filePath = srcRoot.resolve("Renames.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("// Renames\n");
+		contents.append("class Renames {\n");
+		contents.append("  public void method() {}\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		WorkspaceEdit workspaceEdit = services
+				.rename(new RenameParams(new TextDocumentIdentifier(uri), new Position(1, 8), "Renamed")).get();
+
+		List<TextEdit> textEdits = getTextEdits(workspaceEdit, uri);
+		Assertions.assertEquals(1, textEdits.size());
+		assertTextEdit(textEdits, new Range(new Position(1, 6), new Position(1, 13)), "Renamed");
+		List<RenameFile> renameFiles = getRenameFiles(workspaceEdit);
+		Assertions.assertEquals(1, renameFiles.size());
+		Assertions.assertEquals(uri, renameFiles.get(0).getOldUri());
+		Assertions.assertEquals(srcRoot.resolve("Renamed.groovy").toUri().toString(), renameFiles.get(0).getNewUri());
+	}
+
+	@Test
+	void testRenameInnerClass() throws Exception {
+		Path filePath = srcRoot.resolve("Renames.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Renames {\n");
+		contents.append("  static class Inner01 {}\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		WorkspaceEdit workspaceEdit = services
+				.rename(new RenameParams(new TextDocumentIdentifier(uri), new Position(1, 17), "Renamed")).get();
+
+		List<TextEdit> textEdits = getTextEdits(workspaceEdit, uri);
+		Assertions.assertEquals(1, textEdits.size());
+		//only the name of the inner class is replaced, without its outer class
+		assertTextEdit(textEdits, new Range(new Position(1, 15), new Position(1, 22)), "Renamed");
+		//the file is named for the outer class
+		Assertions.assertEquals(0, getRenameFiles(workspaceEdit).size());
+	}
+
+	@Test
+	void testRenameClassNotNamedForFile() throws Exception {
+		Path filePath = srcRoot.resolve("Renames.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Renames {}\n");
+		contents.append("class Other {}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		WorkspaceEdit workspaceEdit = services
+				.rename(new RenameParams(new TextDocumentIdentifier(uri), new Position(1, 8), "Renamed")).get();
+
+		List<TextEdit> textEdits = getTextEdits(workspaceEdit, uri);
+		Assertions.assertEquals(1, textEdits.size());
+		assertTextEdit(textEdits, new Range(new Position(1, 6), new Position(1, 11)), "Renamed");
+		Assertions.assertEquals(0, getRenameFiles(workspaceEdit).size());
+	}
+
+	@Test
+	void testRenameMethod() throws Exception {
+		Path filePath = srcRoot.resolve("Renames.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Renames {\n");
+		contents.append("  public void method() {}\n");
+		contents.append("  public void otherMethod() {\n");
+		contents.append("    method()\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		WorkspaceEdit workspaceEdit = services
+				.rename(new RenameParams(new TextDocumentIdentifier(uri), new Position(1, 15), "renamed")).get();
+
+		List<TextEdit> textEdits = getTextEdits(workspaceEdit, uri);
+		Assertions.assertEquals(2, textEdits.size());
+		assertTextEdit(textEdits, new Range(new Position(1, 14), new Position(1, 20)), "renamed");
+		assertTextEdit(textEdits, new Range(new Position(3, 4), new Position(3, 10)), "renamed");
+		Assertions.assertEquals(0, getRenameFiles(workspaceEdit).size());
+	}
+
+	@Test
+	void testRenameProperty() throws Exception {
+		Path filePath = srcRoot.resolve("Renames.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Renames {\n");
+		contents.append("  String prop\n");
+		contents.append("  public void method() {\n");
+		contents.append("    this.prop = \"hello\"\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		WorkspaceEdit workspaceEdit = services
+				.rename(new RenameParams(new TextDocumentIdentifier(uri), new Position(1, 10), "renamed")).get();
+
+		List<TextEdit> textEdits = getTextEdits(workspaceEdit, uri);
+		Assertions.assertEquals(2, textEdits.size());
+		assertTextEdit(textEdits, new Range(new Position(1, 9), new Position(1, 13)), "renamed");
+		assertTextEdit(textEdits, new Range(new Position(3, 9), new Position(3, 13)), "renamed");
+	}
+
+	@Test
+	void testRenameField() throws Exception {
+		Path filePath = srcRoot.resolve("Renames.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Renames {\n");
+		contents.append("  private String field\n");
+		contents.append("  public void method() {\n");
+		contents.append("    this.field = \"hello\"\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		WorkspaceEdit workspaceEdit = services
+				.rename(new RenameParams(new TextDocumentIdentifier(uri), new Position(1, 19), "renamed")).get();
+
+		List<TextEdit> textEdits = getTextEdits(workspaceEdit, uri);
+		Assertions.assertEquals(2, textEdits.size());
+		assertTextEdit(textEdits, new Range(new Position(1, 17), new Position(1, 22)), "renamed");
+		assertTextEdit(textEdits, new Range(new Position(3, 9), new Position(3, 14)), "renamed");
+	}
+
+	@Test
+	void testRenameMethodNamedInCommentAndAnnotation() throws Exception {
+		Path filePath = srcRoot.resolve("Renames.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Renames {\n");
+		contents.append("  /* method() */\n");
+		contents.append("  @SuppressWarnings(\"method\")\n");
+		contents.append("  public void method() {}\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		WorkspaceEdit workspaceEdit = services
+				.rename(new RenameParams(new TextDocumentIdentifier(uri), new Position(3, 15), "renamed")).get();
+
+		List<TextEdit> textEdits = getTextEdits(workspaceEdit, uri);
+		Assertions.assertEquals(1, textEdits.size());
+		assertTextEdit(textEdits, new Range(new Position(3, 14), new Position(3, 20)), "renamed");
+	}
+
+	private List<TextEdit> getTextEdits(WorkspaceEdit workspaceEdit, String uri) {
+		List<TextEdit> result = null;
+		for (Either<TextDocumentEdit, ResourceOperation> change : workspaceEdit.getDocumentChanges()) {
+			if (change.isLeft() && change.getLeft().getTextDocument().getUri().equals(uri)) {
+				Assertions.assertNull(result);
+				result = change.getLeft().getEdits();
+			}
+		}
+		Assertions.assertNotNull(result);
+		return result;
+	}
+
+	private List<RenameFile> getRenameFiles(WorkspaceEdit workspaceEdit) {
+		return workspaceEdit.getDocumentChanges().stream()
+				.filter(change -> change.isRight() && change.getRight() instanceof RenameFile)
+				.map(change -> (RenameFile) change.getRight()).collect(Collectors.toList());
+	}
+
+	private void assertTextEdit(List<TextEdit> textEdits, Range range, String newText) {
+		Assertions.assertTrue(textEdits.stream().anyMatch(textEdit -> {
+			return textEdit.getRange().equals(range) && textEdit.getNewText().equals(newText);
+		}), "no edit at " + range + " in " + textEdits);
+	}
+}
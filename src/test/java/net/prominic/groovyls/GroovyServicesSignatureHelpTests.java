@@ -22,21 +22,27 @@ package net.prominic.groovyls;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.ParameterInformation;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.ShowMessageRequestParams;
 import org.eclipse.lsp4j.SignatureHelp;
 import org.eclipse.lsp4j.SignatureInformation;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
 import org.eclipse.lsp4j.TextDocumentPositionParams;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -190,4 +196,48 @@ class GroovyServicesSignatureHelpTests {
 		Assertions.assertEquals((int) 0, (int) signatureHelp.getActiveSignature());
 		Assertions.assertEquals((int) 1, (int) signatureHelp.getActiveParameter());
 	}
+
+	@Test
+	void testSignatureHelpSessionDoesNotWaitForCompile() throws Exception {
+		services.setCompileDelay(60_000);
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class SignatureHelp {\n");
+		contents.append("  public SignatureHelp() {\n");
+		contents.append("    method(\n");
+		contents.append("  }\n");
+		contents.append("  public void method(int param0, String param1) {}\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(2, 11);
+		services.signatureHelp(new TextDocumentPositionParams(textDocument, position)).get();
+		Object sourcesCompiled = getCompileMetric("totalSourcesCompiled");
+
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
+				new Range(position, position), 0, "123,");
+		services.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, 2),
+				Collections.singletonList(changeEvent)));
+		SignatureHelp signatureHelp = services
+				.signatureHelp(new TextDocumentPositionParams(textDocument, new Position(2, 15))).get();
+		Assertions.assertEquals(1, signatureHelp.getSignatures().size());
+		Assertions.assertEquals((int) 1, (int) signatureHelp.getActiveParameter());
+		//the change is still waiting to be compiled
+		Assertions.assertEquals(1L, getGauge("signatureHelpSessionHits"));
+		Assertions.assertEquals(sourcesCompiled, getCompileMetric("totalSourcesCompiled"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object getCompileMetric(String name) {
+		Map<String, Object> compile = (Map<String, Object>) services.getMetrics().snapshot().get("compile");
+		return compile.get(name);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object getGauge(String name) {
+		Map<String, Object> gauges = (Map<String, Object>) services.getMetrics().snapshot().get("gauges");
+		return gauges.get(name);
+	}
 }
\ No newline at end of file
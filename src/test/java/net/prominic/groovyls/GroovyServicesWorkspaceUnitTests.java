@@ -0,0 +1,177 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidChangeWatchedFilesParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.FileChangeType;
+import org.eclipse.lsp4j.FileEvent;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+class GroovyServicesWorkspaceUnitTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace_unit/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+	private Map<String, List<Diagnostic>> diagnosticsByURI;
+
+	@BeforeEach
+	void setup() {
+		//the workspace unit finds files by walking the workspace, so their
+		//URIs are the same as the URIs of documents only if they're normalized
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE).normalize();
+		srcRoot = workspaceRoot.resolve(PATH_SRC).normalize();
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+		diagnosticsByURI = new HashMap<>();
+
+		CompilationUnitFactory factory = new CompilationUnitFactory();
+		factory.setWorkspaceUnitEnabled(true);
+		services = new GroovyServices(factory);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+				diagnosticsByURI.put(diagnostics.getUri(), new ArrayList<>(diagnostics.getDiagnostics()));
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		services = null;
+		//the files were written by the test, so they're deleted
+		Files.walk(workspaceRoot).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		workspaceRoot = null;
+		srcRoot = null;
+		diagnosticsByURI = null;
+	}
+
+	@Test
+	void testOpenDocumentReplacesClassesOnDisk() throws Exception {
+		String uriA = writeFile("WorkspaceA.groovy", "class WorkspaceA {}");
+		services.setWorkspaceRoot(workspaceRoot);
+		openDocument(uriA, "class WorkspaceA {}");
+		String uriB = srcRoot.resolve("WorkspaceB.groovy").toUri().toString();
+		openDocument(uriB, "class WorkspaceB {\n  WorkspaceA a\n}");
+		Assertions.assertTrue(getDiagnostics(uriB).isEmpty());
+
+		//the version on disk still declares the class, but the open
+		//document doesn't
+		changeDocument(uriA, 2, "class WorkspaceRenamed {}");
+		List<Diagnostic> diagnostics = getDiagnostics(uriB);
+		Assertions.assertFalse(diagnostics.isEmpty());
+		Assertions.assertTrue(diagnostics.stream()
+				.allMatch(diagnostic -> diagnostic.getMessage().contains("unable to resolve class WorkspaceA")));
+	}
+
+	@Test
+	void testChangeOnDiskRecompilesOpenDependents() throws Exception {
+		String uriA = writeFile("WorkspaceA.groovy", "class WorkspaceA {}");
+		services.setWorkspaceRoot(workspaceRoot);
+		String uriB = srcRoot.resolve("WorkspaceB.groovy").toUri().toString();
+		openDocument(uriB, "class WorkspaceB {\n  WorkspaceA a\n}");
+		Assertions.assertTrue(getDiagnostics(uriB).isEmpty());
+
+		//the open document didn't change, but the class that it uses was
+		//removed from the workspace unit
+		writeFile("WorkspaceA.groovy", "class WorkspaceRenamed {}");
+		services.didChangeWatchedFiles(new DidChangeWatchedFilesParams(
+				Collections.singletonList(new FileEvent(uriA, FileChangeType.Changed))));
+		List<Diagnostic> diagnostics = getDiagnostics(uriB);
+		Assertions.assertFalse(diagnostics.isEmpty());
+		Assertions.assertTrue(diagnostics.stream()
+				.allMatch(diagnostic -> diagnostic.getMessage().contains("unable to resolve class WorkspaceA")));
+	}
+
+	private String writeFile(String fileName, String contents) throws IOException {
+		Path filePath = srcRoot.resolve(fileName);
+		Files.write(filePath, contents.getBytes(StandardCharsets.UTF_8));
+		return filePath.toUri().toString();
+	}
+
+	private void openDocument(String uri, String contents) {
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+	}
+
+	private void changeDocument(String uri, int version, String contents) {
+		services.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, version),
+				Collections.singletonList(new TextDocumentContentChangeEvent(contents))));
+		services.compilePendingChanges();
+	}
+
+	private List<Diagnostic> getDiagnostics(String uri) {
+		List<Diagnostic> diagnostics = diagnosticsByURI.get(uri);
+		return (diagnostics != null) ? diagnostics : Collections.emptyList();
+	}
+}
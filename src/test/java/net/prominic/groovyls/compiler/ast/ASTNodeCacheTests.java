@@ -0,0 +1,122 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ASTNodeCacheTests {
+	private static final URI URI_A = URI.create("file:///A.groovy");
+	private static final URI URI_B = URI.create("file:///B.groovy");
+	private static final URI URI_C = URI.create("file:///C.groovy");
+
+	private ASTNodeCache<String> typeCache;
+	private ASTNodeCache<String> callSiteCache;
+
+	@BeforeEach
+	void setup() {
+		typeCache = new ASTNodeCache<>();
+		callSiteCache = new ASTNodeCache<>(typeCache);
+	}
+
+	@AfterEach
+	void tearDown() {
+		typeCache = null;
+		callSiteCache = null;
+	}
+
+	@Test
+	void testInvalidateDropsValuesThatDependOnFile() {
+		Expression nodeInB = new ConstantExpression("b");
+		Expression nodeInC = new ConstantExpression("c");
+		typeCache.put(nodeInB, "B", new HashSet<>(Arrays.asList(URI_A, URI_B)));
+		typeCache.put(nodeInC, "C", Collections.singleton(URI_C));
+		typeCache.invalidate(Collections.singleton(URI_A));
+		Assertions.assertFalse(typeCache.containsKey(nodeInB));
+		Assertions.assertTrue(typeCache.containsKey(nodeInC));
+	}
+
+	@Test
+	void testNestedValueAddsItsDependenciesToOuterValue() {
+		Expression outer = new ConstantExpression("outer");
+		Expression inner = new ConstantExpression("inner");
+		Assertions.assertTrue(typeCache.beginCompute(outer));
+		typeCache.addDependency(URI_B);
+		Assertions.assertTrue(typeCache.beginCompute(inner));
+		typeCache.addDependency(URI_A);
+		typeCache.endCompute(inner, "inner");
+		typeCache.endCompute(outer, "outer");
+
+		//the outer value in B was computed from a value in A
+		typeCache.invalidate(Collections.singleton(URI_A));
+		Assertions.assertFalse(typeCache.containsKey(outer));
+		Assertions.assertFalse(typeCache.containsKey(inner));
+	}
+
+	@Test
+	void testCachedValueAddsItsDependenciesToValueBeingComputed() {
+		Expression typeNode = new ConstantExpression("type");
+		Expression callNode = new ConstantExpression("call");
+		typeCache.put(typeNode, "type", Collections.singleton(URI_A));
+
+		//a call in B that is resolved with a type that was cached earlier
+		Assertions.assertTrue(callSiteCache.beginCompute(callNode));
+		callSiteCache.addDependency(URI_B);
+		Assertions.assertEquals("type", typeCache.get(typeNode));
+		callSiteCache.endCompute(callNode, "call");
+
+		callSiteCache.invalidate(Collections.singleton(URI_C));
+		Assertions.assertTrue(callSiteCache.containsKey(callNode));
+		callSiteCache.invalidate(Collections.singleton(URI_A));
+		Assertions.assertFalse(callSiteCache.containsKey(callNode));
+	}
+
+	@Test
+	void testValueWithoutDependenciesIsDroppedOnAnyChange() {
+		Expression node = new ConstantExpression("node");
+		Expression permanentNode = new ConstantExpression("permanent");
+		typeCache.put(node, "value", Collections.emptySet());
+		typeCache.putPermanent(permanentNode, "permanent");
+		typeCache.invalidate(Collections.singleton(URI_C));
+		Assertions.assertFalse(typeCache.containsKey(node));
+		Assertions.assertTrue(typeCache.containsKey(permanentNode));
+	}
+
+	@Test
+	void testBeginComputeReportsCycle() {
+		Expression node = new ConstantExpression("node");
+		Assertions.assertTrue(typeCache.beginCompute(node));
+		Assertions.assertFalse(typeCache.beginCompute(node));
+		typeCache.cancelCompute(node);
+		Assertions.assertFalse(typeCache.containsKey(node));
+		Assertions.assertTrue(typeCache.beginCompute(node));
+		typeCache.endCompute(node, "value");
+		Assertions.assertEquals("value", typeCache.get(node));
+	}
+}
@@ -0,0 +1,45 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2019 Prominic.NET, Inc.
+// 
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0 
+// 
+// Unless required by applicable law or agreed to in writing, software 
+// distributed under the License is distributed on an "AS IS" BASIS, 
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and 
+// limitations under the License
+// 
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind. 
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.util;
+
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.ast.ASTNodeCache;
+import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+
+class GroovyASTUtilsTests {
+	@Test
+	void testTypeOfNodeFallsBackToCompilerTypeInCycle() {
+		ASTNodeVisitor astVisitor = new ASTNodeVisitor();
+		ASTNodeCache<?> typeCache = astVisitor.getTypeCache();
+		VariableExpression node = new VariableExpression("localVar", ClassHelper.STRING_TYPE);
+
+		//the type of the node is requested again while it is being computed
+		Assertions.assertTrue(typeCache.beginCompute(node));
+		Assertions.assertEquals(ClassHelper.STRING_TYPE, GroovyASTUtils.getTypeOfNode(node, astVisitor));
+		typeCache.cancelCompute(node);
+
+		//the fallback isn't cached as the node's type
+		Assertions.assertFalse(typeCache.containsKey(node));
+	}
+}
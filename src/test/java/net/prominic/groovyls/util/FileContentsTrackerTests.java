@@ -20,6 +20,9 @@
 package net.prominic.groovyls.util;
 
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 
 import org.eclipse.lsp4j.DidChangeTextDocumentParams;
@@ -100,4 +103,30 @@ class FileContentsTrackerTests {
 		tracker.didChange(changeParams);
 		Assertions.assertEquals("hello\nwaffles", tracker.getContents(URI.create("file.txt")));
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testGetContentsOfClosedFile() throws Exception {
+		Path filePath = Files.createTempFile("closed", ".groovy");
+		try {
+			Files.write(filePath, "hello w\u00f6rld".getBytes(StandardCharsets.UTF_8));
+			Assertions.assertEquals("hello w\u00f6rld", tracker.getContents(filePath.toUri()));
+		} finally {
+			Files.delete(filePath);
+		}
+	}
+
+	@Test
+	void testGetContentsOfClosedFileAfterModification() throws Exception {
+		Path filePath = Files.createTempFile("closed", ".groovy");
+		try {
+			Files.write(filePath, "hello world".getBytes(StandardCharsets.UTF_8));
+			String contents = tracker.getContents(filePath.toUri());
+			Assertions.assertEquals("hello world", contents);
+			Assertions.assertSame(contents, tracker.getContents(filePath.toUri()));
+			Files.write(filePath, "hi there, friend".getBytes(StandardCharsets.UTF_8));
+			Assertions.assertEquals("hi there, friend", tracker.getContents(filePath.toUri()));
+		} finally {
+			Files.delete(filePath);
+		}
+	}
+}